@@ -1,20 +1,15 @@
 import java.awt.Point;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Random;
-import javax.swing.JOptionPane;
 
 public class AiPlayer extends Player {
     private int difficulty;
-    private static final int INFINITY = 999999;
-    private Map<Long, TranspositionEntry> transpositionTable = new HashMap<>(); // Transposition table to store evaluated positions
-    private long[][] zobristTable; // Zobrist table for hashing board positions
-    private Map<Long, Integer> positionCount = new HashMap<>(); // Tracks board position occurrences
-    private long zobristHash; // Zobrist hash for the current board position
-
-    private int fiftyMoveCounter = 0; // Counts moves since the last pawn move or capture
-    private boolean gameOver = false;
+    private long timeBudget = Long.getLong("antichess.ai.millis", 2000); // Milliseconds the AI may think per move, 0 for no limit
+    private long nodeBudget = Long.getLong("antichess.ai.nodes", 0); // Nodes the AI may search per move, 0 for no limit
+    private Engine engine; // The game being played, which also decides draws and runs the search
+    private OpeningBook book = OpeningBook.getDefault(); // Moves played from the opening without searching
+    private int bookVariety = Integer.getInteger("antichess.book.variety", 25); // 0 always plays the best book move, 100 any move in the book
+    private int bookDepth = Integer.getInteger("antichess.book.depth", OpeningBookBuilder.DEFAULT_PLIES); // Plies into the game the book is used for
+    private Random random = new Random(); // Chooses between book moves
 
 
     /**
@@ -22,382 +17,135 @@ public class AiPlayer extends Player {
      * @param myName the name of the AI
      * @param myColour the color of the AI
      * @param myDifficulty the AI's difficulty
+     * @param myEngine the engine holding the game the AI plays in
      */
-    public AiPlayer(String myName, int myColour, int myDifficulty, Piece[][] board) {
+    public AiPlayer(String myName, int myColour, int myDifficulty, Engine myEngine) {
         super(myName, myColour); // Initialize the superclass
         difficulty = myDifficulty; // Set the difficulty level
-        initializeZobristTable(); // Initialize the Zobrist hashing table
-        zobristHash = computeZobristHash(board); // Initialize with the actual board state
-
+        engine = myEngine;
     }
 
     /**
-     * Initializes the Zobrist table with random bitstrings.
-     * This table will be used to generate unique hash values for board positions.
+     * Makes the best move found for this turn
+     * @param board the current board
+     * @param lastMove the last move made
      */
-    private void initializeZobristTable() {
-        zobristTable = new long[64][12]; // 64 squares on the board, 12 piece types (6 pieces for each color)
-        Random rand = new Random(); // Random number generator
-        
-        // Fill the Zobrist table with random bitstrings
-        for (int i = 0; i < 64; i++) {
-            for (int j = 0; j < 12; j++) {
-                zobristTable[i][j] = rand.nextLong(); // Assign a random 64-bit integer to each position-piece combination
-            }
+    public void makeMove(Piece[][] board, Point[] lastMove) {
+        Move bestMove = selectMove(board); // Select the best move using alpha-beta pruning and transposition table
+        if (bestMove != null) {
+            applyMove(board, bestMove, lastMove);
         }
     }
 
     /**
-     * Generates a unique Zobrist hash for the current board position.
-     * @param board the current board state
-     * @return the Zobrist hash value for the board
+     * Plays a move chosen by selectMove in the engine and updates the board to match.
+     * Call on the event dispatch thread.
+     * @param board the current board
+     * @param bestMove the move to play
+     * @param lastMove the last move made
      */
-    private long computeZobristHash(Piece[][] board) {
-        long hash = 0L; // Initialize the hash value
-
-        // Iterate over the board and XOR the corresponding Zobrist values
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board[row][col];
-                if (piece != null) {
-                    int pieceIndex = getPieceIndex(piece); // Get the index of the piece type and color
-                    hash ^= zobristTable[row * 8 + col][pieceIndex]; // XOR the hash with the Zobrist value
-                }
-            }
-        }
-
-        return hash; // Return the computed hash
+    public void applyMove(Piece[][] board, Move bestMove, Point[] lastMove) {
+        engine.play(bestMove.getPackedMove()); // The search already chose any promotion piece
+        Piece.fromPosition(engine.getPosition(), board);
+        lastMove[0] = bestMove.getDestination(); // Update the last move
     }
 
     /**
-     * Maps a piece to a unique index based on its type and color.
-     * @param piece the piece to be indexed
-     * @return an index between 0 and 11
+     * Looks through the possible moves for this turn and selects the best one.
+     * Call on the thread that plays the game; see chooseMove for a background thread.
+     * @param board the current board, only read
+     * @return the best move for the AI to make, or null if the game is over
      */
-    private int getPieceIndex(Piece piece) {
-        // Map piece type and color to an index from 0 to 11
-        // Example: white pawn=0, black pawn=6, white knight=1, black knight=7, etc.
-        int typeIndex = piece.getType(); // Assume getType() returns an index for the piece type
-        return typeIndex + (piece.getColour() == 1 ? 0 : 6); // Offset for black pieces
+    public Move selectMove(Piece[][] board) {
+        if (engine.getResult() != Engine.ONGOING) {
+            return null; // Won, lost or drawn, the board reports it
+        }
+        prepareMove();
+        int bestMove = chooseMove(new Position(engine.getPosition()), engine.getPlyCount());
+        return new Move(bestMove, board); // Return the best move found
     }
 
     /**
-     * Makes the best move found for this turn
-     * @param board the current board
-     * @param lastMove the last move made
+     * Chooses a move in a copy of the game's position. Nothing else of the game is read,
+     * so it may run on a background thread while the game is changed on the event dispatch thread.
+     * @param position a copy of the position to move in, taken by the thread playing the game
+     * @param plyCount the plies played in the game so far
+     * @return the packed move to play, or PackedMove.NONE if there are no moves
      */
-    public void makeMove(Piece[][] board, Point[] lastMove) {
-    	if (gameOver) return;
-        Move bestMove = selectMove(board); // Select the best move using alpha-beta pruning and transposition table
-        if (bestMove == null) {
-            return;
-        }
-        Point loc = bestMove.getDestination();
-        bestMove.getPiece().isAi = true; // Set the AI flag for the piece
-        bestMove.getPiece().move(loc, board); // Make the move on the board
-        
-        // Update the Zobrist hash for the move
-        zobristHash ^= zobristTable[bestMove.getPiece().getLocation().y * 8 + bestMove.getPiece().getLocation().x][getPieceIndex(bestMove.getPiece())]; // Remove piece from original square
-        if (board[loc.y][loc.x] != null) {
-            zobristHash ^= zobristTable[loc.y * 8 + loc.x][getPieceIndex(board[loc.y][loc.x])]; // Remove captured piece
-        }
-        zobristHash ^= zobristTable[loc.y * 8 + loc.x][getPieceIndex(bestMove.getPiece())]; // Place piece in new square
-        
-        // Check for pawn promotion
-        if (bestMove.getPiece() instanceof Pawn && (loc.y == 0 || loc.y == 7)) {
-            bestMove.getPiece().promote(board);
-        }
-        
-        boolean isPawnMove = bestMove.getPiece() instanceof Pawn;
-        boolean isCapture = board[loc.y][loc.x] != null;
-        if (isPawnMove || isCapture) {
-            fiftyMoveCounter = 0; // Reset if a pawn move or capture occurs
-        } else {
-            fiftyMoveCounter++;
+    public int chooseMove(Position position, int plyCount) {
+        // Play from the opening book while the game is still in it
+        if (plyCount < bookDepth) {
+            int bookMove = book.choose(position, bookVariety, random);
+            if (bookMove != PackedMove.NONE) {
+                return bookMove;
+            }
         }
 
-        // Update position count for threefold repetition
-        long currentHash = computeZobristHash(board);
-        positionCount.put(currentHash, positionCount.getOrDefault(currentHash, 0) + 1);
-
-        // Check for draw conditions
-        if (isThreefoldRepetition(board) || isFiftyMoveDraw(board)) {
-            JOptionPane.showMessageDialog(null, "Draw by threefold repetition or fifty-move rule.", "Game Draw", JOptionPane.INFORMATION_MESSAGE);
-            gameOver = true; // Set the gameOver flag to true
-            return;
-        }
-        
-        lastMove[0] = loc; // Update the last move
+        // Deepen one ply at a time until the depth for this difficulty or the budget is reached
+        return engine.findBestMove(position, difficulty + 1, timeBudget, nodeBudget);
     }
 
     /**
-     * Looks through the possible moves for this turn and selects the best one
-     * @param board the current board
-     * @return the best move for the AI to make
+     * Forgets a stop left from the last move. Call before chooseMove is started on another thread,
+     * from the thread that may stop it, so a stop sent before the search gets going still stops it.
      */
-    public Move selectMove(Piece[][] board) {
-    	if (gameOver) return null;
-        ArrayList<Move> allMoves = getAllValidMoves(board); // Get all valid moves
-        if (allMoves.isEmpty()) {
-            tied = true; // Set the tied flag if no moves are available
-            return null;
-        }
-
-        int overallBestScore = -INFINITY;
-        Move overallBestMove = allMoves.get(0);
-
-        // Evaluate each move using alpha-beta pruning
-        for (Move move : allMoves) { // Iterate trough all possible moves
-            Point originalLocation = move.getPiece().getLocation(); // Stores the original position of the piece that's being moved
-            Piece capturedPiece = board[move.getDestination().y][move.getDestination().x]; // If there is an opponent's piece at the destination, stores it
-            board[originalLocation.y][originalLocation.x] = null; // Removes the piece from its original square on the board by setting that square to null
-            board[move.getDestination().y][move.getDestination().x] = move.getPiece(); // Dropping the piece at its new location
-            move.getPiece().setLocation(move.getDestination().x, move.getDestination().y); // Updates the piece's internal position to reflect its new location after the move
-
-         // Check for draw conditions after making the move
-            if (isThreefoldRepetition(board) || isFiftyMoveDraw(board)) {
-                JOptionPane.showMessageDialog(null, "Draw by threefold repetition or fifty-move rule.", "Game Draw", JOptionPane.INFORMATION_MESSAGE);
-                gameOver = true; // Set the gameOver flag to true
-                return null; // Return null if a draw condition is met
-            }
-
-            
-            int score = -alphabeta(board, difficulty, -INFINITY, INFINITY, false); // score returned by alphabeta represents how favorable this position is for the AI
-
-            // Undo the move
-            board[move.getDestination().y][move.getDestination().x] = capturedPiece; // Restores the piece that was at the destination square before the move was made
-            board[originalLocation.y][originalLocation.x] = move.getPiece(); // Returns the piece to its original square on the board
-            move.getPiece().setLocation(originalLocation.x, originalLocation.y); // Updates the piece's internal position to reflect its original location
-            
-            // Update the Zobrist hash
-            zobristHash ^= zobristTable[move.getDestination().y * 8 + move.getDestination().x][getPieceIndex(move.getPiece())]; // Remove piece from destination square
-            if (capturedPiece != null) {
-                zobristHash ^= zobristTable[move.getDestination().y * 8 + move.getDestination().x][getPieceIndex(capturedPiece)]; // Restore captured piece
-            }
-            zobristHash ^= zobristTable[originalLocation.y * 8 + originalLocation.x][getPieceIndex(move.getPiece())]; // Add piece back to original square
-         
-
-            if (score > overallBestScore) { // Checks if the score obtained from evaluating this move is better than the best score 
-                overallBestScore = score; // Updates the best score
-                overallBestMove = move; // Updates the best move
-            }
-        }
-
-        return overallBestMove; // Return the best move found
-    }
-    
-    private boolean isThreefoldRepetition(Piece[][] board) {
-        long currentHash = computeZobristHash(board);
-        return positionCount.getOrDefault(currentHash, 0) >= 3;
+    public void prepareMove() {
+        engine.prepareSearch();
     }
 
-    private boolean isFiftyMoveDraw(Piece[][] board) {
-        return fiftyMoveCounter >= 50;
+    /**
+     * Stops a search running on another thread, which then returns the best move found so far.
+     * Holds until prepareMove, so it also stops a search that has not started yet.
+     */
+    public void stopThinking() {
+        engine.stopSearch();
     }
 
     /**
-     * Minimax algorithm with alpha-beta pruning and transposition table lookup
-     * @param board the current board
-     * @param depth the current depth of the search
-     * @param alpha the alpha value
-     * @param beta the beta value
-     * @param isMaximizingPlayer whether the current player is maximizing or not
-     * @return the score of the board
+     * Gets the difficulty the AI plays at
+     * @return the difficulty, one less than the deepest search
      */
-    private int alphabeta(Piece[][] board, int depth, int alpha, int beta, boolean isMaximizingPlayer) {
-        if (gameOver) return 0; // If the game is over, return a neutral score
-        zobristHash = computeZobristHash(board); // Compute the hash for the current board position
-
-        // Check if the position is already evaluated in the transposition table
-        if (transpositionTable.containsKey(zobristHash)) {
-            TranspositionEntry entry = transpositionTable.get(zobristHash);
-            if (entry.depth >= depth) { // Use the stored score if the depth is sufficient
-                if (entry.flag == TranspositionEntry.EXACT) {
-                    return entry.score; // Exact score
-                } else if (entry.flag == TranspositionEntry.LOWERBOUND) {
-                    alpha = Math.max(alpha, entry.score);
-                } else if (entry.flag == TranspositionEntry.UPPERBOUND) {
-                    beta = Math.min(beta, entry.score);
-                }
-                if (alpha >= beta) {
-                    return entry.score;
-                }
-            }
-        }
-
-        if (depth == 0 || gameOver(board)) { // Base case: maximum depth reached or game over
-            int score = evaluateBoard(board);
-            storeTranspositionEntry(zobristHash, score, depth, alpha, beta, null); // Store the result
-            return score;
-        }
-
-        ArrayList<Move> validMoves = getAllValidMoves(board); // Get all valid moves for the current player
-
-        int bestScore;
-        Move bestMove = null; // Track the best move found
-        if (isMaximizingPlayer) { // AI player
-            bestScore = -INFINITY;
-            for (Move move : validMoves) {
-                Point originalLocation = move.getPiece().getLocation();
-                Piece capturedPiece = board[move.getDestination().y][move.getDestination().x];
-                board[originalLocation.y][originalLocation.x] = null;
-                board[move.getDestination().y][move.getDestination().x] = move.getPiece();
-                move.getPiece().setLocation(move.getDestination().x, move.getDestination().y);
-
-                int eval = alphabeta(board, depth - 1, alpha, beta, false);
-
-                // Undo the move
-                board[move.getDestination().y][move.getDestination().x] = capturedPiece;
-                board[originalLocation.y][originalLocation.x] = move.getPiece();
-                move.getPiece().setLocation(originalLocation.x, originalLocation.y);
-                
-                // Update the Zobrist hash
-                zobristHash ^= zobristTable[move.getDestination().y * 8 + move.getDestination().x][getPieceIndex(move.getPiece())]; // Remove piece from destination square
-                if (capturedPiece != null) {
-                    zobristHash ^= zobristTable[move.getDestination().y * 8 + move.getDestination().x][getPieceIndex(capturedPiece)]; // Restore captured piece
-                }
-                zobristHash ^= zobristTable[originalLocation.y * 8 + originalLocation.x][getPieceIndex(move.getPiece())]; // Add piece back to original square
-
-
-                if (eval > bestScore) {
-                    bestScore = eval;
-                    bestMove = move;
-                }
-                alpha = Math.max(alpha, eval);
-                if (beta <= alpha) {
-                    break;
-                }
-            }
-        } else { // Opponent player
-            bestScore = INFINITY;
-            for (Move move : validMoves) {
-                Point originalLocation = move.getPiece().getLocation();
-                Piece capturedPiece = board[move.getDestination().y][move.getDestination().x];
-                board[originalLocation.y][originalLocation.x] = null;
-                board[move.getDestination().y][move.getDestination().x] = move.getPiece();
-                move.getPiece().setLocation(move.getDestination().x, move.getDestination().y);
-
-                int eval = alphabeta(board, depth - 1, alpha, beta, true);
-
-                // Undo the move
-                board[move.getDestination().y][move.getDestination().x] = capturedPiece;
-                board[originalLocation.y][originalLocation.x] = move.getPiece();
-                move.getPiece().setLocation(originalLocation.x, originalLocation.y);
-                
-                // Update the Zobrist hash
-                zobristHash ^= zobristTable[move.getDestination().y * 8 + move.getDestination().x][getPieceIndex(move.getPiece())]; // Remove piece from destination square
-                if (capturedPiece != null) {
-                    zobristHash ^= zobristTable[move.getDestination().y * 8 + move.getDestination().x][getPieceIndex(capturedPiece)]; // Restore captured piece
-                }
-                zobristHash ^= zobristTable[originalLocation.y * 8 + originalLocation.x][getPieceIndex(move.getPiece())]; // Add piece back to original square
-
-                if (eval < bestScore) {
-                    bestScore = eval;
-                    bestMove = move;
-                }
-                beta = Math.min(beta, eval);
-                if (beta <= alpha) {
-                    break;
-                }
-            }
-        }
-
-        storeTranspositionEntry(zobristHash, bestScore, depth, alpha, beta, bestMove); // Store the result in the table
-        return bestScore;
-    }
-    
-    // Helper method to store entries in the transposition table
-    private void storeTranspositionEntry(long zobristHash, int score, int depth, int alpha, int beta, Move bestMove) {
-        int flag;
-        if (score <= alpha) flag = TranspositionEntry.UPPERBOUND;
-        else if (score >= beta) flag = TranspositionEntry.LOWERBOUND;
-        else flag = TranspositionEntry.EXACT;
-        transpositionTable.put(zobristHash, new TranspositionEntry(score, depth, bestMove, flag));
+    public int getDifficulty() {
+        return difficulty;
     }
 
-
-    private ArrayList<Move> getAllValidMoves(Piece[][] board) {
-        ArrayList<Move> allMoves = new ArrayList<>();
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (board[row][col] != null && board[row][col].getColour() == colour) {
-                    board[row][col].lookAhead(board, difficulty * 4);
-                    allMoves.addAll(board[row][col].getMoves());
-                }
-            }
-        }
-        return allMoves;
+    /**
+     * Sets how long the AI may think about each move
+     * @param millis the time budget in milliseconds, 0 for no limit
+     */
+    public void setTimeBudget(long millis) {
+        timeBudget = millis;
     }
 
-    public boolean gameOver(Piece[][] board) {
-    	if (gameOver) {
-            return true; // If the game is over, return true immediately
-        }
-        int whitePieces = 0;
-        int blackPieces = 0;
-
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (board[row][col] != null) {
-                    if (board[row][col].getColour() == 1) {
-                        whitePieces++;
-                    } else {
-                        blackPieces++;
-                    }
-                }
-            }
-        }
-
-        // Check if either player has no pieces left
-        if (whitePieces == 0 || blackPieces == 0) {
-            return true;
-        }
-
-        // Check for stalemate
-        boolean whiteHasMoves = hasLegalMoves(board, 1);
-        boolean blackHasMoves = hasLegalMoves(board, 2);
-
-        if (!whiteHasMoves || !blackHasMoves) {
-            return true;
-        }
-        
-        // Check for draw conditions
-        if (isThreefoldRepetition(board) || isFiftyMoveDraw(board)) {
-            gameOver = true;
-            return true;
-        }
-
+    /**
+     * Sets how many positions the AI may search for each move
+     * @param nodes the node budget, 0 for no limit
+     */
+    public void setNodeBudget(long nodes) {
+        nodeBudget = nodes;
+    }
 
-        return false;
+    /**
+     * Sets the opening book the AI plays from
+     * @param myBook the book, which may be empty to always search
+     */
+    public void setBook(OpeningBook myBook) {
+        book = myBook;
     }
 
-    private boolean hasLegalMoves(Piece[][] board, int playerColour) {
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (board[row][col] != null && board[row][col].getColour() == playerColour) {
-                    ArrayList<Point> moves = board[row][col].getMoveLocations(board, false);
-                    if (!moves.isEmpty()) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+    /**
+     * Sets how freely the AI chooses between book moves
+     * @param variety 0 to always play the move with the highest weight, up to 100 to play any book move
+     */
+    public void setBookVariety(int variety) {
+        bookVariety = Math.max(0, Math.min(100, variety));
     }
 
-    private int evaluateBoard(Piece[][] board) {
-        // Use Move class's score calculation method
-        int score = 0;
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (board[row][col] != null) {
-                    ArrayList<Move> moves = board[row][col].getMoves();
-                    for (Move move : moves) {
-                        score += move.getScore();
-                    }
-                }
-            }
-        }
-        return score;
+    /**
+     * Sets how many plies into the game the opening book is used
+     * @param plies the book depth, 0 to never use the book
+     */
+    public void setBookDepth(int plies) {
+        bookDepth = plies;
     }
 }
@@ -3,6 +3,8 @@ import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.io.FileInputStream;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
@@ -14,6 +16,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.KeyStroke;
 
 public class AntiChessMain extends JFrame implements ActionListener
 {
@@ -101,10 +104,80 @@ public class AntiChessMain extends JFrame implements ActionListener
 				myBoard.newGame(false);
 			}
 		});
+		JMenuItem stopOption = new JMenuItem("Move Now");
+		stopOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0));
+		stopOption.addActionListener(new ActionListener() {
+			/**
+			   Stops the computer's search so it plays the best move found so far
+			   @param event    The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				myBoard.stopAiThinking();
+			}
+		});
+		JMenuItem undoOption = new JMenuItem("Undo Move");
+		undoOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z,
+				InputEvent.CTRL_DOWN_MASK));
+		undoOption.addActionListener(new ActionListener() {
+			/**
+			   Takes back the last move, and the computer's reply to it
+			   @param event    The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				myBoard.undoMove();
+			}
+		});
+		JMenuItem redoOption = new JMenuItem("Redo Move");
+		redoOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y,
+				InputEvent.CTRL_DOWN_MASK));
+		redoOption.addActionListener(new ActionListener() {
+			/**
+			   Plays again the moves taken back last
+			   @param event    The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				myBoard.redoMove();
+			}
+		});
+		JMenuItem positionOption = new JMenuItem("Position (FEN)...");
+		positionOption.addActionListener(new ActionListener() {
+			/**
+			   Shows the position as a FEN, which can be copied or replaced
+			   by another position to play from
+			   @param event    The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				String current = myBoard.getFen();
+				String fen = (String) JOptionPane.showInputDialog(myBoard,
+						"Position (FEN):", "Position", JOptionPane.PLAIN_MESSAGE,
+						null, null, current);
+				if (fen == null || fen.trim().equals(current))
+					return;
+				try
+				{
+					myBoard.loadPosition(fen.trim());
+					myBoard.setVisible(true);
+					chessArea.setVisible(false);
+				}
+				catch (IllegalArgumentException e)
+				{
+					JOptionPane.showMessageDialog(myBoard, e.getMessage(),
+							"Position", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		});
 		// Add menu tabs to menu
 		menuBar.add(gameMenu);
 		gameMenu.add(newOption);
 		gameMenu.add(newOption2);
+		gameMenu.add(stopOption);
+		gameMenu.add(undoOption);
+		gameMenu.add(redoOption);
+		gameMenu.add(positionOption);
 		gameMenu.add(aboutOption);
 
 		setJMenuBar(menuBar);
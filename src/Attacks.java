@@ -0,0 +1,317 @@
+/**
+   Precomputed attack sets. Knight, king and pawn attacks are plain tables
+   indexed by square. Bishop and rook attacks use magic bitboards: the
+   blockers on a slider's rays are multiplied by a magic number whose top
+   bits index a table holding the attacks for exactly those blockers. The
+   magics below were found by running this class's main; the tables are
+   filled from them at class load, and a magic that does not fit is searched
+   for again from a fixed seed.
+ */
+public final class Attacks
+{
+	// Squares a knight or king on a square attacks
+	static final long[] KNIGHT = new long[64];
+	static final long[] KING = new long[64];
+
+	// Squares a pawn attacks, indexed by colour and square
+	static final long[][] PAWN = new long[3][64];
+
+	private static final int[][] KNIGHT_STEPS = { { -2, -1 }, { -2, 1 },
+			{ -1, -2 }, { -1, 2 }, { 1, -2 }, { 1, 2 }, { 2, -1 }, { 2, 1 } };
+	private static final int[][] KING_STEPS = { { -1, -1 }, { -1, 0 },
+			{ -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 }, { 1, 0 }, { 1, 1 } };
+	static final int[][] BISHOP_DIRECTIONS = { { -1, -1 }, { -1, 1 },
+			{ 1, -1 }, { 1, 1 } };
+	static final int[][] ROOK_DIRECTIONS = { { -1, 0 }, { 1, 0 }, { 0, -1 },
+			{ 0, 1 } };
+
+	// The squares whose occupancy changes a slider's attacks, edges excluded
+	private static final long[] BISHOP_MASK = new long[64];
+	private static final long[] ROOK_MASK = new long[64];
+
+	private static final long[] BISHOP_MAGIC = {
+			0x0844604A10410100L, 0x00440820C1020900L, 0x0104042400421040L,
+			0x00040410880000A2L, 0xB002021004005080L, 0x8804220840480420L,
+			0x2080482410091000L, 0x0262020051049000L, 0x0013403004490840L,
+			0x0000051810810201L, 0x0700884204022C00L, 0x0401244042800200L,
+			0x2000011040200110L, 0x0020184430040000L, 0x0000040101082020L,
+			0x0090810401010802L, 0x0008084102080210L, 0x081000600200B500L,
+			0x1001000808002080L, 0x2009000824010410L, 0x010A000402118000L,
+			0x0020202110082009L, 0x2501020088211084L, 0x61012A0304010401L,
+			0x2030400004040442L, 0x00A4A00002022402L, 0x0400880010004012L,
+			0x0042002008008120L, 0x0101001089004000L, 0x1200484002011000L,
+			0x04C2020040491020L, 0x0201020811104116L, 0x0101101204C04400L,
+			0x0116822110088800L, 0x2205280400080022L, 0x2500020080880080L,
+			0x0040050100184440L, 0x00A0089100528040L, 0x00020801028620A0L,
+			0x0001510200810040L, 0x0008018410102008L, 0x2010421004001083L,
+			0x4400220022105002L, 0x048008201800E900L, 0x0040200410408400L,
+			0x00C0008080808100L, 0xC020280081204082L, 0x140200810A0C8900L,
+			0x4000841002100280L, 0x0006004124300002L, 0x4800010401040200L,
+			0x0000480020880000L, 0x150C044010510020L, 0x0449202002008240L,
+			0x0061A00400808422L, 0x0102100200890410L, 0x0612410041504004L,
+			0x8000002108021000L, 0x080A201904014400L, 0x044AA00002104400L,
+			0x0800000010021203L, 0x00040008A0280A26L, 0x00C0318490028601L,
+			0x2410200101082102L };
+	private static final long[] ROOK_MAGIC = {
+			0x0080021280244003L, 0x0040100040002000L, 0x2300184102502000L,
+			0x1280080004900080L, 0x4100049002080100L, 0x0100080100040002L,
+			0x820000CC08130E00L, 0x0200038028420401L, 0x0000802040008004L,
+			0xC405401005402000L, 0x4002001422008040L, 0x0C82002040100A00L,
+			0x0008808008008400L, 0x0001000300040008L, 0x0100800200800100L,
+			0x0001000062049900L, 0x0094820021004200L, 0x009004C008502000L,
+			0x80A4120040802200L, 0xA400090010010120L, 0x0101010010040800L,
+			0x8042808004000200L, 0x400CA40008501201L, 0x011002000502B044L,
+			0x0140004080008020L, 0x06020C8200244100L, 0x0010820600201140L,
+			0x10120B0100100020L, 0x4008000900050010L, 0x9002000404001020L,
+			0x280A000200040108L, 0x2022C10200004084L, 0x0000400020800080L,
+			0x0010002000404010L, 0x3001812002801000L, 0x0024100480800800L,
+			0x0008000400800880L, 0x002020C008010410L, 0x5101100804000102L,
+			0x8010800060800100L, 0x0040008000408020L, 0x0000200050004000L,
+			0x5012802042060010L, 0x8020100100090020L, 0x0000080004008080L,
+			0x0004010002004040L, 0x01100A0118040070L, 0x6001000448850002L,
+			0x0010208041120200L, 0x006DC00581200280L, 0x2009002000104100L,
+			0xE22200100A422200L, 0x0080800400080080L, 0x0424000402008080L,
+			0x3882000188440200L, 0x00900C4081140600L, 0x1005126080010041L,
+			0x2B80201100804001L, 0x110522028040502AL, 0x4010001100217409L,
+			0x8812001008042002L, 0x6881000208040001L, 0x0920009002010804L,
+			0x40020B004490E402L };
+
+	private static final int[] BISHOP_SHIFT = new int[64];
+	private static final int[] ROOK_SHIFT = new int[64];
+
+	private static final long[][] BISHOP_TABLE = new long[64][];
+	private static final long[][] ROOK_TABLE = new long[64][];
+
+	// State of the random number generator used to search for magics
+	private static long seed = 0x3A61C5L;
+
+	static
+	{
+		for (int sq = 0; sq < 64; sq++)
+		{
+			KNIGHT[sq] = stepMask(sq, KNIGHT_STEPS);
+			KING[sq] = stepMask(sq, KING_STEPS);
+			PAWN[Position.WHITE][sq] = stepMask(sq, new int[][] { { -1, -1 },
+					{ -1, 1 } });
+			PAWN[Position.BLACK][sq] = stepMask(sq, new int[][] { { 1, -1 },
+					{ 1, 1 } });
+		}
+		for (int sq = 0; sq < 64; sq++)
+		{
+			BISHOP_MASK[sq] = relevantMask(sq, BISHOP_DIRECTIONS);
+			BISHOP_SHIFT[sq] = 64 - Long.bitCount(BISHOP_MASK[sq]);
+			BISHOP_TABLE[sq] = new long[1 << Long.bitCount(BISHOP_MASK[sq])];
+			BISHOP_MAGIC[sq] = fillTable(sq, BISHOP_MASK[sq], BISHOP_MAGIC[sq],
+					BISHOP_SHIFT[sq], BISHOP_DIRECTIONS, BISHOP_TABLE[sq]);
+			ROOK_MASK[sq] = relevantMask(sq, ROOK_DIRECTIONS);
+			ROOK_SHIFT[sq] = 64 - Long.bitCount(ROOK_MASK[sq]);
+			ROOK_TABLE[sq] = new long[1 << Long.bitCount(ROOK_MASK[sq])];
+			ROOK_MAGIC[sq] = fillTable(sq, ROOK_MASK[sq], ROOK_MAGIC[sq],
+					ROOK_SHIFT[sq], ROOK_DIRECTIONS, ROOK_TABLE[sq]);
+		}
+	}
+
+	private Attacks()
+	{
+	}
+
+	/**
+	   Finds the squares a bishop attacks, including the first piece on each
+	   diagonal
+	   @param sq        the square of the bishop
+	   @param occupied  the occupied squares
+	   @return the attacked squares
+	 */
+	public static long bishop(int sq, long occupied)
+	{
+		return BISHOP_TABLE[sq][(int) (((occupied & BISHOP_MASK[sq]) * BISHOP_MAGIC[sq]) >>> BISHOP_SHIFT[sq])];
+	}
+
+	/**
+	   Finds the squares a rook attacks, including the first piece on each
+	   line
+	   @param sq        the square of the rook
+	   @param occupied  the occupied squares
+	   @return the attacked squares
+	 */
+	public static long rook(int sq, long occupied)
+	{
+		return ROOK_TABLE[sq][(int) (((occupied & ROOK_MASK[sq]) * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+	}
+
+	public static long queen(int sq, long occupied)
+	{
+		return bishop(sq, occupied) | rook(sq, occupied);
+	}
+
+	/**
+	   Finds the squares a piece other than a pawn attacks
+	   @param type      the piece type
+	   @param sq        the square of the piece
+	   @param occupied  the occupied squares
+	   @return the attacked squares, including those of both colours' pieces
+	 */
+	public static long of(int type, int sq, long occupied)
+	{
+		switch (type)
+		{
+			case Position.KNIGHT:
+				return KNIGHT[sq];
+			case Position.KING:
+				return KING[sq];
+			case Position.BISHOP:
+				return bishop(sq, occupied);
+			case Position.ROOK:
+				return rook(sq, occupied);
+			default:
+				return queen(sq, occupied);
+		}
+	}
+
+	/**
+	   Walks a slider's rays square by square. Used to fill the magic tables
+	   and as the reference the lookups are checked and benchmarked against.
+	   @param sq          the square of the slider
+	   @param occupied    the occupied squares
+	   @param directions  the row and column steps of the rays
+	   @return the attacked squares
+	 */
+	static long slidingAttacks(int sq, long occupied, int[][] directions)
+	{
+		long attacks = 0L;
+		for (int[] direction : directions)
+		{
+			int row = (sq >> 3) + direction[0];
+			int col = (sq & 7) + direction[1];
+			while (row >= 0 && row < 8 && col >= 0 && col < 8)
+			{
+				long bit = 1L << (row * 8 + col);
+				attacks |= bit;
+				if ((occupied & bit) != 0)
+					break;
+				row += direction[0];
+				col += direction[1];
+			}
+		}
+		return attacks;
+	}
+
+	// The ray squares of a slider, leaving out the last square of each ray
+	private static long relevantMask(int sq, int[][] directions)
+	{
+		long mask = 0L;
+		for (int[] direction : directions)
+		{
+			int row = (sq >> 3) + direction[0];
+			int col = (sq & 7) + direction[1];
+			while (row + direction[0] >= 0 && row + direction[0] < 8
+					&& col + direction[1] >= 0 && col + direction[1] < 8)
+			{
+				mask |= 1L << (row * 8 + col);
+				row += direction[0];
+				col += direction[1];
+			}
+		}
+		return mask;
+	}
+
+	/**
+	   Fills a slider's attack table for one square, searching for a new
+	   magic if the given one maps two different attack sets to one slot
+	   @param sq          the square of the slider
+	   @param mask        the squares whose occupancy matters
+	   @param magic       the magic to try first, 0 to search straight away
+	   @param shift       64 minus the number of bits in the mask
+	   @param directions  the row and column steps of the rays
+	   @param table       the table to fill
+	   @return the magic the table was filled with
+	 */
+	private static long fillTable(int sq, long mask, long magic, int shift,
+			int[][] directions, long[] table)
+	{
+		int subsets = 1 << Long.bitCount(mask);
+		long[] blockers = new long[subsets];
+		long[] attacks = new long[subsets];
+		long subset = 0L;
+		for (int i = 0; i < subsets; i++)
+		{
+			blockers[i] = subset;
+			attacks[i] = slidingAttacks(sq, subset, directions);
+			subset = (subset - mask) & mask; // Next subset of the mask
+		}
+
+		// Which attempt last wrote each slot, so the table need not be cleared
+		int[] usedBy = new int[subsets];
+		for (int attempt = 1;; attempt++)
+		{
+			if (attempt > 1 || magic == 0)
+			{
+				magic = nextRandom() & nextRandom() & nextRandom(); // Few bits set
+				if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6)
+					continue;
+			}
+			boolean collision = false;
+			for (int i = 0; i < subsets && !collision; i++)
+			{
+				int index = (int) ((blockers[i] * magic) >>> shift);
+				if (usedBy[index] != attempt)
+				{
+					usedBy[index] = attempt;
+					table[index] = attacks[i];
+				}
+				else if (table[index] != attacks[i])
+					collision = true;
+			}
+			if (!collision)
+				return magic;
+		}
+	}
+
+	// Xorshift generator, faster than java.util.Random for the magic search
+	private static long nextRandom()
+	{
+		seed ^= seed >>> 12;
+		seed ^= seed << 25;
+		seed ^= seed >>> 27;
+		return seed * 2685821657736338717L;
+	}
+
+	/**
+	   Searches for new magics from the fixed seed and prints them in the form
+	   used for BISHOP_MAGIC and ROOK_MAGIC
+	   @param args  not used
+	 */
+	public static void main(String[] args)
+	{
+		seed = 0x3A61C5L;
+		String[] names = { "BISHOP_MAGIC", "ROOK_MAGIC" };
+		for (int piece = 0; piece < 2; piece++)
+		{
+			int[][] directions = piece == 0 ? BISHOP_DIRECTIONS : ROOK_DIRECTIONS;
+			StringBuilder out = new StringBuilder(names[piece] + " = {\n");
+			for (int sq = 0; sq < 64; sq++)
+			{
+				long mask = relevantMask(sq, directions);
+				int bits = Long.bitCount(mask);
+				long magic = fillTable(sq, mask, 0, 64 - bits, directions,
+						new long[1 << bits]);
+				out.append(String.format(sq % 3 == 0 ? "\t\t\t0x%016XL" : " 0x%016XL", magic));
+				out.append(sq == 63 ? " };\n" : sq % 3 == 2 ? ",\n" : ",");
+			}
+			System.out.print(out);
+		}
+	}
+
+	private static long stepMask(int sq, int[][] steps)
+	{
+		long mask = 0L;
+		for (int[] step : steps)
+		{
+			int row = (sq >> 3) + step[0];
+			int col = (sq & 7) + step[1];
+			if (row >= 0 && row < 8 && col >= 0 && col < 8)
+				mask |= 1L << (row * 8 + col);
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,303 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+   Micro-benchmarks for move generation, slider attacks, hashing, reading
+   and writing FEN, evaluation and search over a fixed corpus of positions.
+   Every benchmark is run for a number of warmup rounds before the measured
+   rounds and reports throughput and the bytes allocated per operation.
+   Usage: java Benchmark [name filter]
+ */
+public class Benchmark
+{
+	private static final int WARMUP_ROUNDS = 5;
+
+	private static final int MEASURED_ROUNDS = 10;
+
+	// Repetitions of the corpus in one round of the cheap benchmarks
+	private static final int REPEATS = 2000;
+
+	private static final int SEARCH_DEPTH = 5;
+
+	private static final String[] TYPE_NAMES = { "pawn", "knight", "bishop",
+			"rook", "queen", "king" };
+
+	// Results are summed in here so the JIT cannot drop the work
+	private static long sink;
+
+	/**
+	   One round of a benchmark
+	 */
+	interface Workload
+	{
+		/**
+		   Runs the round
+		   @return the number of operations performed
+		 */
+		long run();
+	}
+
+	/**
+	   Builds the corpus: the positions every 6 plies of a game of random moves
+	   from a fixed seed, so every run measures the same positions
+	   @return the positions
+	 */
+	static Position[] corpus()
+	{
+		ArrayList<Position> positions = new ArrayList<Position>();
+		Random rand = new Random(20240101L);
+		Position pos = Position.startPosition();
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		for (int ply = 0; ply <= 60; ply++)
+		{
+			int count = MoveGenerator.generateLegal(pos, moves);
+			if (count == 0)
+				break;
+			if (ply % 6 == 0)
+				positions.add(new Position(pos));
+			// Sorted so the corpus does not depend on the generator's move order
+			Arrays.sort(moves, 0, count);
+			pos.makeMove(moves[rand.nextInt(count)]);
+		}
+		return positions.toArray(new Position[positions.size()]);
+	}
+
+	/**
+	   Measures a benchmark and prints a line of results
+	   @param name      the name to print
+	   @param unit      what an operation is
+	   @param workload  the benchmark
+	 */
+	static void measure(String name, String unit, Workload workload)
+	{
+		for (int round = 0; round < WARMUP_ROUNDS; round++)
+			workload.run();
+
+		long ops = 0;
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		for (int round = 0; round < MEASURED_ROUNDS; round++)
+			ops += workload.run();
+		long nanos = Math.max(1, System.nanoTime() - start);
+		long bytes = allocatedBytes() - startBytes;
+
+		System.out.println(String.format("%-28s %14.0f %-8s %10.1f ns/op %10.1f B/op",
+				name, ops * 1e9 / nanos, unit + "/s", (double) nanos / ops,
+				(double) bytes / ops));
+	}
+
+	// Bytes allocated so far by this thread, or 0 if the JVM cannot tell
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+
+	public static void main(String[] args)
+	{
+		String filter = args.length > 0 ? args[0] : "";
+		final Position[] positions = corpus();
+		System.out.println("corpus: " + positions.length + " positions, "
+				+ MEASURED_ROUNDS + " measured rounds after " + WARMUP_ROUNDS
+				+ " warmup rounds");
+
+		// Piece.getMoveLocations for each piece type on the board it stands on
+		final Piece[][][] boards = new Piece[positions.length][][];
+		final boolean[][] mustTake = new boolean[positions.length][3]; // By colour
+		for (int i = 0; i < positions.length; i++)
+		{
+			boards[i] = Piece.fromPosition(positions[i]);
+			mustTake[i][Position.WHITE] = Piece.sideCanTake(boards[i], Position.WHITE);
+			mustTake[i][Position.BLACK] = Piece.sideCanTake(boards[i], Position.BLACK);
+		}
+		for (int type = Position.PAWN; type <= Position.KING; type++)
+		{
+			final int pieceType = type;
+			String name = "getMoveLocations." + TYPE_NAMES[type];
+			if (name.contains(filter))
+				measure(name, "calls", new Workload() {
+					public long run()
+					{
+						long calls = 0;
+						for (int repeat = 0; repeat < REPEATS / 10; repeat++)
+						{
+							for (int i = 0; i < boards.length; i++)
+							{
+								Piece[][] board = boards[i];
+								for (Piece[] row : board)
+								{
+									for (Piece piece : row)
+									{
+										if (piece != null && piece.getType() == pieceType)
+										{
+											sink += piece.getMoveLocations(board,
+													mustTake[i][piece.getColour()]).size();
+											calls++;
+										}
+									}
+								}
+							}
+						}
+						return calls;
+					}
+				});
+		}
+
+		if ("generateLegal".contains(filter))
+			measure("generateLegal", "calls", new Workload() {
+				int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+				public long run()
+				{
+					for (int repeat = 0; repeat < REPEATS; repeat++)
+					{
+						for (Position pos : positions)
+							sink += MoveGenerator.generateLegal(pos, moves);
+					}
+					return (long) REPEATS * positions.length;
+				}
+			});
+
+		// Slider attacks by walking rays against the magic bitboard lookups
+		final int[] sliderSquares = new int[positions.length * 32];
+		final int[] sliderTypes = new int[sliderSquares.length];
+		final long[] sliderOccupied = new long[sliderSquares.length];
+		int sliders = 0;
+		for (Position pos : positions)
+		{
+			for (int sq = 0; sq < 64; sq++)
+			{
+				int type = Position.typeOf(pos.getPiece(sq));
+				if (pos.getPiece(sq) != Position.NO_PIECE
+						&& type >= Position.BISHOP && type <= Position.QUEEN)
+				{
+					sliderSquares[sliders] = sq;
+					sliderTypes[sliders] = type;
+					sliderOccupied[sliders++] = pos.getOccupied();
+				}
+			}
+		}
+		final int sliderCount = sliders;
+		if ("sliders.rays".contains(filter))
+			measure("sliders.rays", "calls", new Workload() {
+				public long run()
+				{
+					for (int repeat = 0; repeat < REPEATS; repeat++)
+					{
+						for (int i = 0; i < sliderCount; i++)
+						{
+							long attacks = 0L;
+							if (sliderTypes[i] != Position.ROOK)
+								attacks |= Attacks.slidingAttacks(sliderSquares[i],
+										sliderOccupied[i], Attacks.BISHOP_DIRECTIONS);
+							if (sliderTypes[i] != Position.BISHOP)
+								attacks |= Attacks.slidingAttacks(sliderSquares[i],
+										sliderOccupied[i], Attacks.ROOK_DIRECTIONS);
+							sink += attacks;
+						}
+					}
+					return (long) REPEATS * sliderCount;
+				}
+			});
+		if ("sliders.magic".contains(filter))
+			measure("sliders.magic", "calls", new Workload() {
+				public long run()
+				{
+					for (int repeat = 0; repeat < REPEATS; repeat++)
+					{
+						for (int i = 0; i < sliderCount; i++)
+							sink += Attacks.of(sliderTypes[i], sliderSquares[i],
+									sliderOccupied[i]);
+					}
+					return (long) REPEATS * sliderCount;
+				}
+			});
+
+		if ("Zobrist.compute".contains(filter))
+			measure("Zobrist.compute", "calls", new Workload() {
+				public long run()
+				{
+					for (int repeat = 0; repeat < REPEATS; repeat++)
+					{
+						for (Position pos : positions)
+							sink += Zobrist.compute(pos);
+					}
+					return (long) REPEATS * positions.length;
+				}
+			});
+
+		// Loading test positions from text
+		final String[] fens = new String[positions.length];
+		for (int i = 0; i < positions.length; i++)
+			fens[i] = Fen.toString(positions[i]);
+		if ("Fen.parse".contains(filter))
+			measure("Fen.parse", "positions", new Workload() {
+				Position pos = new Position();
+
+				public long run()
+				{
+					for (int repeat = 0; repeat < REPEATS; repeat++)
+					{
+						for (String fen : fens)
+						{
+							Fen.parse(fen, pos);
+							sink += pos.getHash();
+						}
+					}
+					return (long) REPEATS * positions.length;
+				}
+			});
+		if ("Fen.toString".contains(filter))
+			measure("Fen.toString", "positions", new Workload() {
+				public long run()
+				{
+					for (int repeat = 0; repeat < REPEATS; repeat++)
+					{
+						for (Position pos : positions)
+							sink += Fen.toString(pos).length();
+					}
+					return (long) REPEATS * positions.length;
+				}
+			});
+
+		if ("evaluate".contains(filter))
+			measure("evaluate", "evals", new Workload() {
+				public long run()
+				{
+					for (int repeat = 0; repeat < REPEATS * 10; repeat++)
+					{
+						for (Position pos : positions)
+							sink += Search.evaluate(pos, 0);
+					}
+					return (long) REPEATS * 10 * positions.length;
+				}
+			});
+
+		if ("search".contains(filter))
+		{
+			final TranspositionTable table = new TranspositionTable(16);
+			final Search search = new Search(table);
+			search.setMaxDepth(SEARCH_DEPTH);
+			measure("search.depth" + SEARCH_DEPTH, "nodes", new Workload() {
+				public long run()
+				{
+					long nodes = 0;
+					for (Position pos : positions)
+					{
+						table.clear();
+						sink += search.search(pos);
+						nodes += search.getNodes();
+					}
+					return nodes;
+				}
+			});
+		}
+		System.out.println("(checksum " + sink + ")");
+	}
+}
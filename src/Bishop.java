@@ -1,8 +1,6 @@
 import java.awt.Point;
 import java.util.ArrayList;
 
-import javax.swing.ImageIcon;
-
 public class Bishop extends Piece{
 
 	/**
@@ -14,22 +12,16 @@ public class Bishop extends Piece{
 	public Bishop(int myRow, int myCol, int myColour) {
 		// Call super
 		super(myRow, myCol, myColour);
-		// Select the piece's image depending on its colour
-		if (myColour == 1)
-			image = new ImageIcon("images\\whiteBishop.png").getImage();
-		else
-			image = new ImageIcon("images\\blackBishop.png").getImage();
 	}
 
 	/**
-	   Finds all valid moves for this piece
+	   Finds all the moves of this piece, ignoring whether another piece must
+	   take
 	   @param board    the current board
-	   @param isForced check for forced moves
-	   @return legal move locations
+	   @return the move locations
 	 */
-	public ArrayList<Point> getMoveLocations(Piece [][] board, boolean isForced) {
+	protected ArrayList<Point> findAllMoveLocations(Piece [][] board) {
 
-		canTake = false;
 		ArrayList <Point> moveLocations = new ArrayList <Point>();
 
 		//Diagonal left-up
@@ -40,25 +32,6 @@ public class Bishop extends Piece{
 		moveLocations.addAll (findMoveLocations (board,1,-1));
 		//Diagonal right-down
 		moveLocations.addAll (findMoveLocations (board,1,1));
-		// If the piece may be forced to move, check for it
-		if (isForced)
-		{
-			// Check each valid location to see if it contains a piece
-			for (Point currLoc : moveLocations)
-			{
-				if (board[currLoc.y][currLoc.x] != null)
-				{
-					this.canTake = true;
-					// Modify valid moves
-					ensureForcedTake(board, moveLocations);
-					return moveLocations;
-				}
-			}
-			// Check if another piece must take
-			if (oneCanTake)
-				moveLocations.clear();
-		}
-			
 		return moveLocations;
 	}
 
@@ -12,31 +12,37 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 
 public class Board extends JPanel // JPanel to create a custom panel for the game board
 {
-	private Piece[][] board; // 2D array representing the game board
+	private Engine engine; // The game itself: position, rules and search
+
+	private Piece[][] board; // 2D array of pieces drawn for the engine's position
 	private int turn; // Keeps track of whose turn it is (1 for player one, 2 for player two)
 
 	private Point[] lastMove; // Stores the last move made
 
+	private static final int PIECE_SIZE = 50; // Width and height pieces are drawn at in pixels
+
 	private static Image boardBackground = new ImageIcon(
 			"images\\chessboardPlainBig.png").getImage();
 
 	private static Image panelBackground = new ImageIcon("images/boardMenu.png")
 			.getImage();
 
-	// p = pawn, r = rook, n = knight, b = bishop, k = king, q = queen
-	private static final char[] pieceSet = { 'p', 'p', 'p', 'p', 'p', 'p', 'p',
-			'p', 'r', 'n', 'b', 'q', 'k', 'b', 'n', 'r' };
+	private SpriteCache sprites = new SpriteCache(PIECE_SIZE); // Piece images, loaded when first drawn
 
 	private Piece selectedPiece; // Currently selected piece
 
+	private int[] legalMoves; // Legal moves of the player to move, from the engine
+
 	private Player[] players; // Array of players
 
 	private boolean[] areAI; // Array indicating if the players are AI
@@ -62,6 +68,8 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 
 	public boolean instructionsCalled = false; // Flag to check if instructions are called
 
+	private SwingWorker<Integer, Void> aiWorker; // Background search for the AI's move, null when the AI is not thinking
+
 	/**
 	   Constructs a new board object to manage the game
 	   @param parent    the frame the board exists in      
@@ -117,10 +125,23 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 	   @param whether   an AI is playing or not        
 	 */
 	public void newGame(boolean aiOn)
+	{
+		newGame(aiOn, Position.startPosition());
+	}
+
+	/**
+	   Starts a game from a position, such as one loaded from a FEN
+	   @param aiOn   whether an AI is playing or not
+	   @param start  the position to play from
+	 */
+	public void newGame(boolean aiOn, Position start)
 	{
 		// Set up all required variables for a new game
+		cancelAiMove(); // Drop any search still running for the old game
 		gameOver = false; // Sets the gameOver flag to false, game is ongoing
-		board = new Piece[8][8]; // Initializes an 8x8 board array to hold the pieces 
+		engine = new Engine(start); // Starts from the given position
+		board = Piece.fromPosition(engine.getPosition()); // Pieces to draw and select
+		legalMoves = engine.getLegalMoves();
 		areAI = new boolean[2];  // Initializes an array to track whether each player is an AI or not
 
 		// Check if AI is playing
@@ -135,7 +156,7 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 			areAI[1] = false; // Player 2 is Human
 		}
 		lastMove = new Point[1]; // 1 point array (x,y) to store the last move
-		turn = 1; // Sets the turn to player 1
+		turn = start.getSideToMove(); // Player 1 moves first unless the position says otherwise
 		selectedPiece = null; // Resets the selected piece
 		instructionsCalled = false;
 		// Set up players
@@ -144,12 +165,12 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 		if (aiOn)
 		{
 			if (areAI[0])
-				players[0] = new AiPlayer("White (You)", 1, 1, board); // First player (white) is AI, AI difficulty is 1  
+				players[0] = new AiPlayer("White (You)", 1, 1, engine); // First player (white) is AI, AI difficulty is 1  
 			else
 				players[0] = new Player("White (You)", 1); // First player (white) is Human
 			
 			if (areAI[1])
-				players[1] = new AiPlayer("Computer", 2, 1, board); // Second player (black) is AI, AI difficulty is 1
+				players[1] = new AiPlayer("Computer", 2, 1, engine); // Second player (black) is AI, AI difficulty is 1
 			else
 				players[1] = new Player("Computer", 2); // Second player (black) is Human
 		}
@@ -158,89 +179,82 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 			players[0] = new Player("White Player", 1); // First human player (white) 
 			players[1] = new Player("Black Player", 2); // Second human player (black) 
 		}
-		// Set up black pieces
-		int pieceCount = 0; // Initialize piece count
-		for (int row = 1; row > -1; row--) // Starting from the second row for the black pieces 
-		{
-			for (int col = 0; col < 8; col++) // Loops trough each column 
-			{
-				if (pieceSet[pieceCount] == 'p') // Place black pawn
-				{
-					board[row][col] = new Pawn(row, col, 2);
-				}
-				else if (pieceSet[pieceCount] == 'r') // Place black rook
-				{
-					board[row][col] = new Rook(row, col, 2);
-				}
-				else if (pieceSet[pieceCount] == 'n') // Place black knight
-				{
-					board[row][col] = new Knight(row, col, 2);
-				}
-				else if (pieceSet[pieceCount] == 'b') // Place black bishop
-				{
-					board[row][col] = new Bishop(row, col, 2);
-				}
-				else if (pieceSet[pieceCount] == 'k') // Place black king
-				{
-					board[row][col] = new King(row, col, 2);
-				}
-				else   // Place black queen
-				{
-					board[row][col] = new Queen(row, col, 2);
-				}
-				pieceCount++;
-			}
-		}
-		pieceCount = 0;
-		// Set up white pieces
-		for (int row = 6; row < 8; row++)
-		{
-			for (int col = 0; col < 8; col++)
-			{
-				if (pieceSet[pieceCount] == 'p')
-				{
-					board[row][col] = new Pawn(row, col, 1);
-				}
-				else if (pieceSet[pieceCount] == 'r')
-				{
-					board[row][col] = new Rook(row, col, 1);
-				}
-				else if (pieceSet[pieceCount] == 'n')
-				{
-					board[row][col] = new Knight(row, col, 1);
-				}
-				else if (pieceSet[pieceCount] == 'b')
-				{
-					board[row][col] = new Bishop(row, col, 1);
-				}
-				else if (pieceSet[pieceCount] == 'k')
-				{
-					board[row][col] = new King(row, col, 1);
-				}
-				else
-				{
-					board[row][col] = new Queen(row, col, 1);
-				}
-				pieceCount++;
-			}
-		}
+		GameWriter games = GameWriter.getDefault(); // Keeps the games for later analysis if -Dantichess.games is set
+		if (games != null)
+			engine.record(games, players[0].getName(), players[1].getName(),
+					difficulty(players[0]), difficulty(players[1]));
 		repaint();
+		if (areAI[turn - 1] && engine.getResult() == Engine.ONGOING)
+			startAiMove((AiPlayer) players[turn - 1]); // The AI is to move in the position
 	}
-	// method to handle stalemate   *** Need to be checked 
-	public boolean isStalemate(int playerColour) {
-	    for (int row = 0; row < 8; row++) {
-	        for (int col = 0; col < 8; col++) {
-	            if (board[row][col] != null && board[row][col].getColour() == playerColour) {
-	                ArrayList<Point> moves = board[row][col].getMoveLocations(board, false);
-	                if (!moves.isEmpty()) {
-	                    return false; // Player has at least one legal move
-	                }
-	            }
-	        }
-	    }
-	    return true; // No legal moves found, it's a stalemate
+
+	/**
+	   Takes back the last move, and the computer's reply before it so that a
+	   person is to move again
+	 */
+	public void undoMove()
+	{
+		if (!engine.canUndo())
+			return;
+		cancelAiMove(); // The AI was thinking about the position being taken back, wait for it to stop
+		do
+			engine.undo();
+		while (engine.canUndo() && areAI[engine.getSideToMove() - 1]);
+		showPlayedPosition();
 	}
 
+	/**
+	   Plays again the last move taken back, and the computer's reply after
+	   it if that was taken back too
+	 */
+	public void redoMove()
+	{
+		if (!engine.canRedo())
+			return;
+		cancelAiMove();
+		do
+			engine.redo();
+		while (engine.canRedo() && areAI[engine.getSideToMove() - 1]);
+		showPlayedPosition();
+	}
+
+	// Shows the engine's position after an undo or redo and goes on from it
+	private void showPlayedPosition()
+	{
+		Piece.fromPosition(engine.getPosition(), board);
+		int last = engine.getLastMove();
+		lastMove[0] = last == PackedMove.NONE ? null : new Point(
+				PackedMove.to(last) & 7, PackedMove.to(last) >> 3);
+		turn = Position.opponent(engine.getSideToMove()); // changePlayer passes the turn back
+		changePlayer();
+		repaint();
+	}
+
+	// The AI difficulty of a player, 0 for a person
+	private static int difficulty(Player player)
+	{
+		return player instanceof AiPlayer ? ((AiPlayer) player).getDifficulty() : 0;
+	}
+
+	/**
+	   Starts a game from a position given as a FEN, keeping whether the
+	   computer plays
+	   @param fen  the position, see Fen
+	   @throws IllegalArgumentException if the FEN is not valid
+	 */
+	public void loadPosition(String fen)
+	{
+		newGame(areAI[1], Fen.parse(fen));
+	}
+
+	/**
+	   Gets the position on the board as a FEN
+	   @return the FEN of the current position
+	 */
+	public String getFen()
+	{
+		return Fen.toString(engine.getPosition());
+	}
 
 	/**
 	   Changes the current player and makes the AI move
@@ -252,45 +266,111 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 	        turn++;
 	    else
 	        turn--;
+	    legalMoves = engine.getLegalMoves(); // Moves of the new player, captures only if one can take
 
 	    paintImmediately(new Rectangle(0, 0, 600, 600)); // Refresh the board display
-	    // Initialize counters for each player's pieces
-	    int[] pieceCounter = new int[3];
-	    pieceCounter[1] = 0;
-	    pieceCounter[2] = 0;
-	    boolean hasMoves = false; // Initialize a flag to check if the current player has any available moves
-
-	    for (int row = 0; row < 8; row++) {
-	        for (int col = 0; col < 8; col++) {
-	            if (board[row][col] != null) {  // If there's a piece at the current position
-	                if (board[row][col].getColour() == turn) {  // If the piece belongs to the current player
-	                    pieceCounter[turn]++;   // Increment the count for the current player's pieces
-	                    ArrayList<Point> tempArray = board[row][col].getMoveLocations(board, true); // Get the possible moves
-	                    if (tempArray.size() > 0)
-	                        hasMoves = true; // If there are available moves, set hasMoves to true
-	                } else {  // If the piece belongs to the opponent
-	                    if (turn == 1) // Player 1 turn 
-	                        pieceCounter[2]++; // Increase other player 
-	                    else // Player 2 turn
-	                        pieceCounter[1]++; // Increase other player 
-	                }
-	            }
-	        }
-	    }
-
-	    if (pieceCounter[1] == 0) // Player 1 is the winner, counter has no moves
+	    // The player to move wins with no pieces or no legal moves left
+	    int result = engine.getResult();
+	    if (result == Engine.WHITE_WINS)
 	        win(0);
-	    else if (pieceCounter[2] == 0) // Player 2 is the winner 
+	    else if (result == Engine.BLACK_WINS)
 	        win(1);
-	    else if (!hasMoves && isStalemate(turn)) { // Both has no legal moves 
-	        // Declare stalemated player as the winner
-	        win(turn - 1);
-	    } else if (areAI[turn - 1] && !gameOver) {
-	        players[turn - 1].makeMove(board, lastMove);
-	        changePlayer();
+	    else if (result == Engine.DRAW) // Threefold repetition or fifty-move rule
+	        tie();
+	    else if (areAI[turn - 1] && !gameOver) {
+	        startAiMove((AiPlayer) players[turn - 1]);
 	    }
 	}
 
+	/**
+	   Lets the AI search for its move on a background thread so the board
+	   stays responsive. The move is played on the event dispatch thread.
+	   @param ai  the AI whose turn it is
+	 */
+	private void startAiMove(final AiPlayer ai)
+	{
+		// The search gets its own copy, as the engine may be changed while it runs
+		final Position searched = new Position(engine.getPosition());
+		final int plyCount = engine.getPlyCount();
+		ai.prepareMove(); // A stop from now on stops this search, even before it starts
+		aiWorker = new SwingWorker<Integer, Void>() {
+			protected Integer doInBackground()
+			{
+				return ai.chooseMove(searched, plyCount);
+			}
+
+			protected void done()
+			{
+				// Ignore searches cancelled or replaced by a new game
+				if (isCancelled() || aiWorker != this)
+					return;
+				aiWorker = null;
+				int move;
+				try
+				{
+					move = get();
+				}
+				catch (InterruptedException | ExecutionException e)
+				{
+					throw new IllegalStateException("AI search failed", e);
+				}
+				if (move == PackedMove.NONE) // No moves, which changePlayer reported
+				{
+					repaint();
+					return;
+				}
+				ai.applyMove(board, new Move(move, board), lastMove);
+				changePlayer();
+				repaint();
+			}
+		};
+		repaint(); // Show the thinking indicator
+		aiWorker.execute();
+	}
+
+	/**
+	   Checks if the AI is searching for a move
+	   @return whether the AI is thinking
+	 */
+	public boolean isAiThinking()
+	{
+		return aiWorker != null;
+	}
+
+	/**
+	   Stops the AI's search early; it plays the best move found so far
+	 */
+	public void stopAiThinking()
+	{
+		if (aiWorker != null)
+			((AiPlayer) players[turn - 1]).stopThinking();
+	}
+
+	/**
+	   Abandons the AI's search without playing its move. Waits for the
+	   search to end, so the engine's search is free to be started again.
+	 */
+	private void cancelAiMove()
+	{
+		if (aiWorker == null)
+			return;
+		SwingWorker<Integer, Void> worker = aiWorker;
+		aiWorker = null; // done() then drops the move
+		((AiPlayer) players[turn - 1]).stopThinking();
+		try
+		{
+			worker.get(); // Stopped, so it returns after a few nodes at most
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			// The search failed, so it has ended
+		}
+	}
+
 
 	/**
 	   The paint component that draws the graphics on the screen
@@ -317,20 +397,23 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 			g.setColor(Color.WHITE);
 		}
 		g.drawString("Current Player: " + players[turn - 1].getName(), 700, 100); 
+		// Let the player know the AI is searching and how to stop it
+		if (aiWorker != null)
+		{
+			g.setColor(Color.BLACK);
+			g.fillRect(700, 115, 300, 25);
+			g.setColor(Color.YELLOW);
+			g.drawString("Thinking... (Esc to move now)", 700, 135);
+		}
 		// Highlight force takes
-		// Run through board and highlight all pieces forced to move
+		// Every legal move is a capture when the player must take
 		g.setColor(Color.RED); // Set the color to red for the highlights
-		for (int row = 0; row < 8; row++)
+		for (int move : legalMoves)
 		{
-			for (int col = 0; col < 8; col++)
+			if (PackedMove.isCapture(move))
 			{
-				if (board[row][col] != null
-						&& board[row][col].getColour() == turn
-						&& board[row][col].forcedMove())
-				{
-					g.fillRect(board[row][col].getLocation().x * 71 + 15,
-							board[row][col].getLocation().y * 71 + 19, 70, 70);
-				}
+				int from = PackedMove.from(move);
+				g.fillRect((from & 7) * 71 + 15, (from >> 3) * 71 + 19, 70, 70);
 			}
 		}
 		// Draw pink highlights to display last move
@@ -351,7 +434,7 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 			for (int col = 0; col < 8; col++)
 			{
 				if (board[row][col] != null)
-					board[row][col].draw(g);
+					board[row][col].draw(g, sprites);
 			}
 		}
 		// If they want to see the instructions it will draw and make everything
@@ -368,6 +451,26 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 				mousePoint.y - chessPiece.getHeight(this) / 3, this);
 	}
 
+	/**
+	   Finds where a piece may move to from the legal moves of the player
+	   @param piece  the piece to move
+	   @return the squares the piece can move to
+	 */
+	private ArrayList<Point> getMoveLocations(Piece piece)
+	{
+		ArrayList<Point> moveLocations = new ArrayList<Point>();
+		Point from = piece.getLocation();
+		for (int move : legalMoves)
+		{
+			int to = PackedMove.to(move);
+			Point location = new Point(to & 7, to >> 3);
+			if (PackedMove.from(move) == from.y * 8 + from.x
+					&& !moveLocations.contains(location)) // One square for all promotions
+				moveLocations.add(location);
+		}
+		return moveLocations;
+	}
+
 	/**
 	   Highlights in yellow the valid moves for the current piece
 	   @param g   the Graphics to draw in          
@@ -375,8 +478,7 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 	public void showMoves(Graphics g)
 	{
 		// Get the valid squares to move to
-		ArrayList<Point> validLocations = selectedPiece.getMoveLocations(board,
-				true);
+		ArrayList<Point> validLocations = getMoveLocations(selectedPiece);
 		if (validLocations == null) // If there are no valid locations, exit the method
 			return;
 		// Highlight all valid squares
@@ -392,6 +494,32 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 
 	}
 
+	/**
+	   Asks the player which piece a pawn promotes to
+	   @return the piece type chosen, see Position
+	 */
+	private int choosePromotion()
+	{
+		String[] options = { "Queen", "Rook", "Bishop", "Knight", "King" };
+		int response = JOptionPane.showOptionDialog(null,
+				"Choose piece for promotion", "Pawn Promotion",
+				JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE,
+				null, options, options[0]);
+		switch (response)
+		{
+			case 1:
+				return Position.ROOK;
+			case 2:
+				return Position.BISHOP;
+			case 3:
+				return Position.KNIGHT;
+			case 4:
+				return Position.KING;
+			default:
+				return Position.QUEEN; // Default to Queen if the dialog is closed
+		}
+	}
+
 	/**
 	   Displays tie game message and options to quit or restart
 	 */
@@ -629,9 +757,7 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 				selectedPoint.y /= 75;
 				// No piece currently selected or not on the area
 				if (selectedPiece == null
-						|| selectedPiece.getMoveLocations(board, true) != null
-						&& !selectedPiece.getMoveLocations(board, true)
-								.contains(selectedPoint))
+						|| !getMoveLocations(selectedPiece).contains(selectedPoint))
 				{
 					// Figure out which square/piece was clicked on
 					selectedPiece = board[selectedPoint.y][selectedPoint.x];
@@ -642,39 +768,24 @@ public class Board extends JPanel // JPanel to create a custom panel for the gam
 				}
 				else
 				{
-					// Deduct number of pieces left for player
-					if (board[selectedPoint.y][selectedPoint.x] != null)
-					{
-						selectedPiece.move(selectedPoint, board);
-						
-						// Handle promotion for human players
-	                    if (selectedPiece instanceof Pawn) {
-	                        if (selectedPiece.getColour() == 1 && selectedPiece.getLocation().y == 0 ||
-	                            selectedPiece.getColour() == 2 && selectedPiece.getLocation().y == 7) {
-	                            selectedPiece.promote(board);
-	                        }
-	                    }
-
-						// Other player's turn
-						changePlayer();
-					}
-					else
+					// Pawns reaching the last rank promote to the piece the player picks
+					int promotion = Position.NO_PIECE;
+					if (selectedPiece instanceof Pawn
+							&& (selectedPoint.y == 0 || selectedPoint.y == 7))
+						promotion = choosePromotion();
+
+					Point from = selectedPiece.getLocation();
+					int move = engine.findMove(from.y * 8 + from.x,
+							selectedPoint.y * 8 + selectedPoint.x, promotion);
+					if (move != PackedMove.NONE)
 					{
-						selectedPiece.move(selectedPoint, board);
-						
-						 // Handle promotion for human players
-	                    if (selectedPiece instanceof Pawn) {
-	                        if (selectedPiece.getColour() == 1 && selectedPiece.getLocation().y == 0 ||
-	                            selectedPiece.getColour() == 2 && selectedPiece.getLocation().y == 7) {
-	                            selectedPiece.promote(board);
-	                        }
-	                    }
-	                    
-						lastMove[0] = selectedPoint;
+						engine.play(move);
+						Piece.fromPosition(engine.getPosition(), board);
+						if (!PackedMove.isCapture(move))
+							lastMove[0] = selectedPoint;
 						// Other player's turn
 						changePlayer();
 					}
-
 				}
 			}
 			repaint();
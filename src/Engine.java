@@ -0,0 +1,447 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+   Headless antichess engine: the current game position, the rules that end
+   a game and the search. It has no AWT or Swing dependencies, so it can be
+   driven from a plain main(), a test or a batch job; Board and AiPlayer are
+   clients of it.
+ */
+public class Engine
+{
+	// Game results
+	public static final int ONGOING = 0;
+	public static final int WHITE_WINS = 1;
+	public static final int BLACK_WINS = 2;
+	public static final int DRAW = 3;
+
+	// Plies without a pawn move or capture before the game is drawn
+	public static final int FIFTY_MOVE_PLIES = 100;
+
+	private Position position;
+
+	private ParallelSearch search;
+
+	private MoveGenerator moveGenerator;
+
+	private Position start; // The position the game was set up at
+
+	private int[] history; // Moves played, followed by moves taken back that can be replayed
+
+	private int plyCount; // Plies played since the game was set up, the moves in history on the board
+
+	private int historyLength; // Moves in history, plyCount plus those that can be replayed
+
+	private GameWriter recorder; // Keeps the moves as they are played, null if the game is not kept
+
+	private boolean recordOpen; // Whether the recorded game is still waiting for moves
+
+	// Players of the recorded game, written again when the game is started over in the file
+	private String white, black;
+	private int whiteDifficulty, blackDifficulty;
+
+	/**
+	   Constructs an engine set up at the starting position
+	 */
+	public Engine()
+	{
+		this(Position.startPosition());
+	}
+
+	/**
+	   Constructs an engine set up at the given position
+	   @param start  the position to play from
+	 */
+	public Engine(Position start)
+	{
+		search = new ParallelSearch();
+		moveGenerator = new MoveGenerator(1);
+		setPosition(start);
+	}
+
+	/**
+	   Starts a new game from the starting position
+	 */
+	public void newGame()
+	{
+		setPosition(Position.startPosition());
+	}
+
+	/**
+	   Starts playing from the given position
+	   @param start  the position to play from
+	 */
+	public void setPosition(Position start)
+	{
+		this.start = new Position(start);
+		position = new Position(start);
+		history = new int[Position.MAX_PLY];
+		plyCount = 0;
+		historyLength = 0;
+	}
+
+	/**
+	   Gets the current position. It must not be changed by the caller.
+	   @return the current position
+	 */
+	public Position getPosition()
+	{
+		return position;
+	}
+
+	public int getSideToMove()
+	{
+		return position.getSideToMove();
+	}
+
+	/**
+	   Gets the number of moves played since the game was set up
+	   @return the number of plies
+	 */
+	public int getPlyCount()
+	{
+		return plyCount;
+	}
+
+	/**
+	   Gets the move that led to the current position
+	   @return the packed move, or PackedMove.NONE at the start of the game
+	 */
+	public int getLastMove()
+	{
+		return plyCount > 0 ? history[plyCount - 1] : PackedMove.NONE;
+	}
+
+	/**
+	   Gets the legal moves in the current position
+	   @return the packed legal moves
+	 */
+	public int[] getLegalMoves()
+	{
+		int count = moveGenerator.generate(position, 0);
+		int[] moves = new int[count];
+		System.arraycopy(moveGenerator.getMoves(0), 0, moves, 0, count);
+		return moves;
+	}
+
+	/**
+	   Finds the legal move between two squares
+	   @param from       the square the piece moves from
+	   @param to         the square the piece moves to
+	   @param promotion  the type a pawn promotes to, Position.NO_PIECE if none
+	   @return the packed move, or PackedMove.NONE if it is not legal
+	 */
+	public int findMove(int from, int to, int promotion)
+	{
+		int count = moveGenerator.generate(position, 0);
+		int[] moves = moveGenerator.getMoves(0);
+		for (int i = 0; i < count; i++)
+		{
+			int move = moves[i];
+			if (PackedMove.from(move) == from && PackedMove.to(move) == to
+					&& PackedMove.promotion(move) == promotion)
+				return move;
+		}
+		return PackedMove.NONE;
+	}
+
+	/**
+	   Plays a move in the current position
+	   @param move  a legal packed move
+	   @throws IllegalArgumentException if the move is not legal
+	 */
+	public void play(int move)
+	{
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		int legalMove = findMove(from, to, PackedMove.promotion(move));
+		if (legalMove == PackedMove.NONE)
+			throw new IllegalArgumentException("Illegal move "
+					+ PackedMove.toString(move));
+
+		makeMove(legalMove);
+		historyLength = plyCount; // The moves taken back cannot follow a new one
+		recordMove(legalMove);
+	}
+
+	// Plays a legal move and adds it to the history
+	private void makeMove(int move)
+	{
+		if (plyCount == history.length)
+			history = Arrays.copyOf(history, history.length * 2);
+		history[plyCount++] = move;
+		position.makeMove(move);
+	}
+
+	public boolean canUndo()
+	{
+		return plyCount > 0;
+	}
+
+	public boolean canRedo()
+	{
+		return plyCount < historyLength;
+	}
+
+	/**
+	   Takes back the last move played. It can be played again with redo
+	   until another move is played.
+	   @throws IllegalStateException if no move has been played
+	 */
+	public void undo()
+	{
+		if (!canUndo())
+			throw new IllegalStateException("No move to take back");
+		position.unmakeMove();
+		plyCount--;
+		recordTakeBack();
+	}
+
+	/**
+	   Plays again the last move taken back
+	   @throws IllegalStateException if there is no move taken back
+	 */
+	public void redo()
+	{
+		if (!canRedo())
+			throw new IllegalStateException("No move to play again");
+		int move = history[plyCount];
+		makeMove(move);
+		recordMove(move);
+	}
+
+	/**
+	   Keeps the game in a game file: the moves played so far, then every
+	   move as it is played and the result when the game ends
+	   @param writer           the game file
+	   @param white            the name of the white player
+	   @param black            the name of the black player
+	   @param whiteDifficulty  white's AI difficulty, 0 for a person
+	   @param blackDifficulty  black's AI difficulty, 0 for a person
+	 */
+	public void record(GameWriter writer, String white, String black,
+			int whiteDifficulty, int blackDifficulty)
+	{
+		recorder = writer;
+		this.white = white;
+		this.black = black;
+		this.whiteDifficulty = whiteDifficulty;
+		this.blackDifficulty = blackDifficulty;
+		recordAgain();
+	}
+
+	/**
+	   Starts the recorded game in the game file with the moves now on the
+	   board. A game already ended in the file stays there as it was.
+	 */
+	private void recordAgain()
+	{
+		if (recorder == null)
+			return;
+		try
+		{
+			recorder.startGame(white, black, whiteDifficulty, blackDifficulty,
+					start);
+			recordOpen = true;
+			for (int i = 0; i < plyCount; i++)
+				recorder.writeMove(history[i]);
+			endRecordIfOver();
+		}
+		catch (IOException e)
+		{
+			stopRecording(e);
+		}
+	}
+
+	private void recordMove(int move)
+	{
+		if (recorder == null || !recordOpen)
+			return;
+		try
+		{
+			recorder.writeMove(move);
+			endRecordIfOver();
+		}
+		catch (IOException e)
+		{
+			stopRecording(e);
+		}
+	}
+
+	private void recordTakeBack()
+	{
+		if (recorder == null)
+			return;
+		if (!recordOpen) // Its result is written, so it is recorded again without the move
+		{
+			recordAgain();
+			return;
+		}
+		try
+		{
+			recorder.writeTakeBack();
+		}
+		catch (IOException e)
+		{
+			stopRecording(e);
+		}
+	}
+
+	private void endRecordIfOver() throws IOException
+	{
+		int result = getResult();
+		if (result != ONGOING)
+		{
+			recorder.endGame(result);
+			recordOpen = false;
+		}
+	}
+
+	private void stopRecording(IOException e)
+	{
+		System.err.println(e.getMessage() + ", the game is not kept");
+		recorder = null;
+	}
+
+	/**
+	   Decides whether the game is over. A side that has lost all its pieces or
+	   has no legal move wins; threefold repetition and the fifty-move rule
+	   draw.
+	   @return ONGOING, WHITE_WINS, BLACK_WINS or DRAW
+	 */
+	public int getResult()
+	{
+		int side = position.getSideToMove();
+		if (position.getPieceCount(side) == 0
+				|| moveGenerator.generate(position, 0) == 0)
+			return side == Position.WHITE ? WHITE_WINS : BLACK_WINS;
+		if (position.getHalfmoveClock() >= FIFTY_MOVE_PLIES)
+			return DRAW;
+		int earlier = position.findRepetition(position.getPly()); // The position's history is the game's
+		if (earlier >= 0 && position.findRepetition(earlier) >= 0)
+			return DRAW; // Threefold repetition
+		return ONGOING;
+	}
+
+	/**
+	   Searches the current position for the best move
+	   @param maxDepth  the deepest iteration to search
+	   @param millis    the time budget in milliseconds, 0 for no limit
+	   @param nodes     the node budget, 0 for no limit
+	   @return the best move, or PackedMove.NONE if there are no moves
+	 */
+	public int findBestMove(int maxDepth, long millis, long nodes)
+	{
+		return findBestMove(position, maxDepth, millis, nodes);
+	}
+
+	/**
+	   Searches a position other than the current one, such as a copy of it
+	   taken for a search on another thread, which then does not read the
+	   game while it is played on
+	   @param root      the position to search, left unchanged
+	   @param maxDepth  the deepest iteration to search
+	   @param millis    the time budget in milliseconds, 0 for no limit
+	   @param nodes     the node budget, 0 for no limit
+	   @return the best move, or PackedMove.NONE if there are no moves
+	 */
+	public int findBestMove(Position root, int maxDepth, long millis, long nodes)
+	{
+		search.setMaxDepth(maxDepth);
+		search.setTimeLimit(millis);
+		search.setNodeLimit(nodes);
+		return search.search(root);
+	}
+
+	/**
+	   Sets the evaluation weights the engine searches with
+	   @param params  the weights, or null to use Evaluation.getParams()
+	 */
+	public void setEvalParams(EvalParams params)
+	{
+		search.setEvalParams(params);
+	}
+
+	/**
+	   Stops a search running on another thread, which then returns the best
+	   move found so far, or one about to be started there
+	 */
+	public void stopSearch()
+	{
+		search.stop();
+	}
+
+	/**
+	   Forgets a stop request left from an earlier search. Call before a
+	   search is started on another thread, from the thread that may stop it,
+	   so that a stop sent before the search gets going is not lost.
+	 */
+	public void prepareSearch()
+	{
+		search.clearStop();
+	}
+
+	/**
+	   Gets the principal variation of the last search
+	   @return the packed moves of the principal variation
+	 */
+	public int[] getPrincipalVariation()
+	{
+		return search.getPrincipalVariation();
+	}
+
+	public int getScore()
+	{
+		return search.getScore();
+	}
+
+	public SearchStats getSearchStats()
+	{
+		return search.getStats();
+	}
+
+	/**
+	   Plays a game of the engine against itself without a display and prints
+	   the moves and the result. Each side can be given its own evaluation
+	   parameter file to compare two sets of weights. The game is also added
+	   to the game file named by -Dantichess.games if that is set.
+	   Usage: java Engine [millisPerMove] [maxDepth] [whiteEval blackEval]
+	   @param args  the time per move, the depth limit and the weights
+	   @throws IOException if a parameter file cannot be read
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		int maxDepth = args.length > 1 ? Integer.parseInt(args[1])
+				: Position.MAX_PLY - 1;
+		EvalParams[] params = new EvalParams[3];
+		if (args.length > 3)
+		{
+			params[Position.WHITE] = EvalParams.load(new File(args[2]));
+			params[Position.BLACK] = EvalParams.load(new File(args[3]));
+		}
+		Engine engine = new Engine();
+		GameWriter games = GameWriter.getDefault();
+		if (games != null)
+		{
+			String white = args.length > 3 ? args[2] : "Engine";
+			String black = args.length > 3 ? args[3] : "Engine";
+			int difficulty = Math.min(maxDepth, 255);
+			engine.record(games, white, black, difficulty, difficulty);
+		}
+		int ply = 0;
+		while (engine.getResult() == ONGOING)
+		{
+			engine.setEvalParams(params[engine.getSideToMove()]);
+			int move = engine.findBestMove(maxDepth, millis, 0);
+			if (ply % 2 == 0)
+				System.out.print((ply / 2 + 1) + ". ");
+			System.out.print(PackedMove.toString(move) + " ");
+			engine.play(move);
+			ply++;
+		}
+		String[] results = { "*", "1-0", "0-1", "1/2-1/2" };
+		System.out.println(results[engine.getResult()]);
+	}
+}
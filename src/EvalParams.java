@@ -0,0 +1,272 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+   The weights of the evaluation: material, piece-square tables and mobility,
+   each with a middlegame and an endgame value that Evaluation blends by how
+   many pieces are left. A set of weights never changes once built, so a new
+   set can be swapped in while another search still uses the old one.
+
+   Every weight is a named parameter, which is how they are stored in a file
+   and how a tuner sees them. The file is text: a header line
+   "antichess-eval 1" with the format version, then a line per parameter
+   with its name and middlegame and endgame values, for example
+   "material.queen -140 -150". Parameters a file leaves out keep their
+   defaults, and lines starting with # are comments.
+
+   For evaluating, the middlegame and endgame values are packed into one int,
+   the middlegame value in the low 16 bits and the endgame value above, so a
+   sum of packed values is the packed sum of each half and Position keeps a
+   single running total per term.
+ */
+public final class EvalParams
+{
+	public static final int VERSION = 1;
+
+	private static final String HEADER = "antichess-eval";
+
+	private static final String[] TYPE_NAMES = { "pawn", "knight", "bishop",
+			"rook", "queen", "king" };
+
+	// Layout of the parameters: material by type, piece-square tables by type
+	// and square from white's side, then mobility by type
+	static final int MATERIAL = 0;
+	static final int PIECE_SQUARE = MATERIAL + 6;
+	static final int MOBILITY = PIECE_SQUARE + 6 * 64;
+	public static final int COUNT = MOBILITY + 6;
+
+	private static final String[] NAMES = new String[COUNT];
+
+	private static final Map<String, Integer> INDEX = new HashMap<String, Integer>();
+
+	// Middlegame and endgame value of each parameter, in that order
+	private final int[] values;
+
+	// Packed material value of each piece code
+	final int[] material;
+
+	// Packed piece-square value indexed by piece code * 64 + square
+	final int[] pieceSquare;
+
+	// Packed value per attacked square by piece type
+	final int[] mobility;
+
+	static
+	{
+		for (int type = Position.PAWN; type <= Position.KING; type++)
+		{
+			NAMES[MATERIAL + type] = "material." + TYPE_NAMES[type];
+			for (int sq = 0; sq < 64; sq++)
+				NAMES[PIECE_SQUARE + type * 64 + sq] = "pst." + TYPE_NAMES[type]
+						+ "." + PackedMove.squareName(sq);
+			NAMES[MOBILITY + type] = "mobility." + TYPE_NAMES[type];
+		}
+		for (int i = 0; i < COUNT; i++)
+			INDEX.put(NAMES[i], i);
+	}
+
+	/**
+	   Constructs a set of weights from the values of every parameter
+	   @param values  the middlegame and endgame value of each parameter in
+	                  turn, 2 * COUNT values in all, copied
+	 */
+	public EvalParams(int[] values)
+	{
+		if (values.length != 2 * COUNT)
+			throw new IllegalArgumentException("Expected " + 2 * COUNT
+					+ " values, got " + values.length);
+		this.values = values.clone();
+		material = new int[12];
+		pieceSquare = new int[12 * 64];
+		mobility = new int[6];
+		for (int type = Position.PAWN; type <= Position.KING; type++)
+		{
+			int white = Position.pieceCode(type, Position.WHITE);
+			int black = Position.pieceCode(type, Position.BLACK);
+			material[white] = packed(MATERIAL + type);
+			material[black] = material[white];
+			for (int sq = 0; sq < 64; sq++)
+			{
+				// Black's squares are white's mirrored
+				int value = packed(PIECE_SQUARE + type * 64 + sq);
+				pieceSquare[white * 64 + sq] = value;
+				pieceSquare[black * 64 + (sq ^ 56)] = value;
+			}
+			mobility[type] = packed(MOBILITY + type);
+		}
+	}
+
+	/**
+	   Gets the weights the engine was written with
+	   @return the default weights
+	 */
+	public static EvalParams defaults()
+	{
+		// Material counts against the owner as every piece has to be given away
+		int[][] material = { { -100, -100 }, { -110, -100 }, { -120, -110 },
+				{ -100, -120 }, { -140, -150 }, { -90, -120 } };
+
+		// Per ring closer to the centre, where a piece attacks more squares and
+		// is more easily forced to take
+		int[] centre = { 0, -3, -2, 0, -2, 1 };
+
+		// Pawns by the rows advanced from their starting row
+		int[][] advance = { { 0, 0 }, { 4, 6 }, { 8, 12 }, { 12, 18 },
+				{ 18, 26 }, { 26, 36 }, { 0, 0 } };
+
+		int[][] mobility = { { 0, 0 }, { 2, 3 }, { 2, 3 }, { 2, 3 }, { 1, 2 },
+				{ 1, 2 } };
+
+		int[] values = new int[2 * COUNT];
+		for (int type = Position.PAWN; type <= Position.KING; type++)
+		{
+			values[2 * (MATERIAL + type)] = material[type][0];
+			values[2 * (MATERIAL + type) + 1] = material[type][1];
+			for (int sq = 0; sq < 64; sq++)
+			{
+				int row = sq >> 3;
+				int col = sq & 7;
+				int ring = Math.min(Math.min(row, 7 - row), Math.min(col, 7 - col));
+				int mg = centre[type] * ring;
+				int eg = mg;
+				if (type == Position.PAWN)
+				{
+					mg += advance[Math.max(0, 6 - row)][0];
+					eg += advance[Math.max(0, 6 - row)][1];
+				}
+				values[2 * (PIECE_SQUARE + type * 64 + sq)] = mg;
+				values[2 * (PIECE_SQUARE + type * 64 + sq) + 1] = eg;
+			}
+			values[2 * (MOBILITY + type)] = mobility[type][0];
+			values[2 * (MOBILITY + type) + 1] = mobility[type][1];
+		}
+		return new EvalParams(values);
+	}
+
+	/**
+	   Reads weights from a parameter file, see the class description
+	   @param file  the file to read
+	   @return the weights, with defaults for parameters the file leaves out
+	   @throws IOException if the file cannot be read, is of another version
+	           or has a line that is not a known parameter
+	 */
+	public static EvalParams load(File file) throws IOException
+	{
+		int[] values = defaults().values;
+		try (BufferedReader in = new BufferedReader(new FileReader(file)))
+		{
+			boolean headerRead = false;
+			int lineNumber = 0;
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] fields = line.split("\\s+");
+				if (!headerRead)
+				{
+					if (fields.length != 2 || !fields[0].equals(HEADER))
+						throw new IOException(file + ": not an evaluation parameter file");
+					if (!fields[1].equals(String.valueOf(VERSION)))
+						throw new IOException(file + ": version " + fields[1]
+								+ " is not supported, expected " + VERSION);
+					headerRead = true;
+					continue;
+				}
+				Integer index = INDEX.get(fields[0]);
+				if (index == null || fields.length != 3)
+					throw new IOException(file + ":" + lineNumber
+							+ ": expected a parameter name and two values");
+				try
+				{
+					values[2 * index] = Integer.parseInt(fields[1]);
+					values[2 * index + 1] = Integer.parseInt(fields[2]);
+				}
+				catch (NumberFormatException e)
+				{
+					throw new IOException(file + ":" + lineNumber + ": "
+							+ e.getMessage());
+				}
+			}
+			if (!headerRead)
+				throw new IOException(file + ": empty parameter file");
+		}
+		return new EvalParams(values);
+	}
+
+	/**
+	   Writes every parameter to a file that load reads back
+	   @param file  the file to write
+	   @throws IOException if the file cannot be written
+	 */
+	public void save(File file) throws IOException
+	{
+		try (PrintWriter out = new PrintWriter(new FileWriter(file)))
+		{
+			out.println(HEADER + " " + VERSION);
+			out.println("# name middlegame endgame");
+			for (int i = 0; i < COUNT; i++)
+				out.println(NAMES[i] + " " + values[2 * i] + " "
+						+ values[2 * i + 1]);
+		}
+	}
+
+	/**
+	   Gets the values of every parameter, middlegame and endgame in turn
+	   @return a copy of the values
+	 */
+	public int[] getValues()
+	{
+		return values.clone();
+	}
+
+	public static String getName(int index)
+	{
+		return NAMES[index];
+	}
+
+	/**
+	   Packs a middlegame and an endgame value into one int
+	   @param mg  the middlegame value
+	   @param eg  the endgame value
+	   @return the packed value
+	 */
+	static int pack(int mg, int eg)
+	{
+		return (eg << 16) + mg;
+	}
+
+	static int middlegame(int packed)
+	{
+		return (short) packed;
+	}
+
+	static int endgame(int packed)
+	{
+		// Rounds back up when the middlegame half borrowed from it
+		return (packed + 0x8000) >> 16;
+	}
+
+	private int packed(int index)
+	{
+		return pack(values[2 * index], values[2 * index + 1]);
+	}
+
+	/**
+	   Writes the default weights to a file to start a parameter file from
+	   Usage: java EvalParams file
+	   @param args  the file to write
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		defaults().save(new File(args.length > 0 ? args[0] : "eval.txt"));
+	}
+}
@@ -0,0 +1,196 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+   Static evaluation of a Position for the search. The score has three terms:
+   material, where every piece counts against its owner since the aim of
+   antichess is to lose them all; piece-square values for where the pieces
+   stand; and mobility, the squares the pieces attack. Each term has a
+   middlegame and an endgame value, blended by the number of pieces left.
+   The weights come from an EvalParams, read at startup from the file named
+   by -Dantichess.eval if it is set, and can be replaced between searches.
+   Position keeps the packed material and piece-square sums of each side up
+   to date in makeMove and unmakeMove, so only mobility is found when a
+   position is evaluated. Nothing is allocated by evaluate.
+ */
+public final class Evaluation
+{
+	// Pieces on the board at the start, where only middlegame values count
+	static final int PHASE_PIECES = 32;
+
+	// Weights used by searches started from now on
+	private static volatile EvalParams params = initialParams();
+
+	private Evaluation()
+	{
+	}
+
+	private static EvalParams initialParams()
+	{
+		String file = System.getProperty("antichess.eval");
+		if (file == null)
+			return EvalParams.defaults();
+		try
+		{
+			return EvalParams.load(new File(file));
+		}
+		catch (IOException e)
+		{
+			System.err.println(e.getMessage() + ", using the default weights");
+			return EvalParams.defaults();
+		}
+	}
+
+	/**
+	   Gets the weights new positions and searches use
+	   @return the current weights
+	 */
+	public static EvalParams getParams()
+	{
+		return params;
+	}
+
+	/**
+	   Replaces the weights. Searches already running keep the weights they
+	   started with; the next search uses the new ones.
+	   @param newParams  the weights to use
+	 */
+	public static void setParams(EvalParams newParams)
+	{
+		params = newParams;
+	}
+
+	/**
+	   Evaluates a position for the side to move with the weights the position
+	   keeps its sums for
+	   @param pos  the position
+	   @return the score, positive when the side to move is better
+	 */
+	public static int evaluate(Position pos)
+	{
+		int[] mobility = pos.getEvalParams().mobility;
+		int us = pos.getSideToMove();
+		int them = Position.opponent(us);
+		int packed = pos.getMaterial(us) - pos.getMaterial(them)
+				+ pos.getPieceSquare(us) - pos.getPieceSquare(them)
+				+ mobility(pos, us, mobility) - mobility(pos, them, mobility);
+		return taper(packed, phase(pos));
+	}
+
+	/**
+	   Sums the weighted squares attacked by the pieces of a side other than
+	   its pawns, not counting squares its own pieces stand on
+	   @param pos     the position
+	   @param colour  the side
+	   @param weights the packed weight per square by piece type
+	   @return the packed mobility score of the side
+	 */
+	static int mobility(Position pos, int colour, int[] weights)
+	{
+		long occupied = pos.getOccupied();
+		long own = pos.getOccupied(colour);
+		long pieces = own & ~pos.getPieces(Position.PAWN, colour);
+		int score = 0;
+		while (pieces != 0)
+		{
+			int sq = Long.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+			int type = Position.typeOf(pos.getPiece(sq));
+			score += weights[type]
+					* Long.bitCount(Attacks.of(type, sq, occupied) & ~own);
+		}
+		return score;
+	}
+
+	/**
+	   Gets how far the game is from the endgame
+	   @param pos  the position
+	   @return PHASE_PIECES with every piece on the board, down to 0 with none
+	 */
+	static int phase(Position pos)
+	{
+		return Math.min(PHASE_PIECES, Long.bitCount(pos.getOccupied()));
+	}
+
+	/**
+	   Blends the middlegame and endgame halves of a packed score
+	   @param packed  the packed score, see EvalParams
+	   @param phase   the phase of the position
+	   @return the blended score
+	 */
+	static int taper(int packed, int phase)
+	{
+		return (EvalParams.middlegame(packed) * phase
+				+ EvalParams.endgame(packed) * (PHASE_PIECES - phase))
+				/ PHASE_PIECES;
+	}
+
+	/**
+	   Splits the evaluation of a position into its terms, for tuning
+	   @param pos  the position
+	   @return the terms for the side to move
+	 */
+	public static Breakdown breakdown(Position pos)
+	{
+		int[] mobility = pos.getEvalParams().mobility;
+		int us = pos.getSideToMove();
+		int them = Position.opponent(us);
+		Breakdown terms = new Breakdown();
+		terms.phase = phase(pos);
+		terms.material = pos.getMaterial(us) - pos.getMaterial(them);
+		terms.pieceSquare = pos.getPieceSquare(us) - pos.getPieceSquare(them);
+		terms.mobility = mobility(pos, us, mobility)
+				- mobility(pos, them, mobility);
+		return terms;
+	}
+
+	/**
+	   The terms of an evaluation, each from the side to move's point of view
+	   and blended for the phase of the position
+	 */
+	public static class Breakdown
+	{
+		int phase;
+
+		// Packed middlegame and endgame values
+		int material;
+		int pieceSquare;
+		int mobility;
+
+		public int getPhase()
+		{
+			return phase;
+		}
+
+		public int getMaterial()
+		{
+			return taper(material, phase);
+		}
+
+		public int getPieceSquare()
+		{
+			return taper(pieceSquare, phase);
+		}
+
+		public int getMobility()
+		{
+			return taper(mobility, phase);
+		}
+
+		/**
+		   Gets the blended sum of the terms, the same score evaluate gives
+		   @return the total score
+		 */
+		public int getTotal()
+		{
+			return taper(material + pieceSquare + mobility, phase);
+		}
+
+		public String toString()
+		{
+			return "phase " + phase + " material " + getMaterial()
+					+ " piecesquare " + getPieceSquare() + " mobility "
+					+ getMobility() + " total " + getTotal();
+		}
+	}
+}
@@ -0,0 +1,252 @@
+import java.util.Arrays;
+
+/**
+   Reads and writes positions in a FEN-like notation, for example
+   "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - 0 1". The fields are
+   separated by single spaces:
+
+   the piece placement as in FEN, from black's back rank down, white pieces
+   in upper case;
+   the side to move, w or b;
+   the pawns whose double step differs from what their square suggests, or
+   - if there are none. A pawn on its starting row is taken not to have
+   moved and any other pawn to have moved, so this field is - in every game
+   played from the starting position and only lists squares, such as e2, of
+   positions set up otherwise. It stands where FEN keeps castling rights,
+   which antichess does not have;
+   the halfmove clock, the plies since the last pawn move or capture;
+   the fullmove number.
+
+   The fields after the placement may be left out, in which case white is to
+   move, no pawn is an exception and the counters are 0 and 1. The parser
+   scans the text once and allocates nothing when given a position to set
+   up, so test positions can be loaded in bulk.
+ */
+public final class Fen
+{
+	public static final String START =
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - 0 1";
+
+	// Letter of each piece code
+	private static final String PIECE_LETTERS = "PNBRQKpnbrqk";
+
+	// Piece code of each letter, NO_PIECE for other characters
+	private static final int[] PIECE_CODES = new int[128];
+
+	static
+	{
+		Arrays.fill(PIECE_CODES, Position.NO_PIECE);
+		for (int code = 0; code < 12; code++)
+			PIECE_CODES[PIECE_LETTERS.charAt(code)] = code;
+	}
+
+	private Fen()
+	{
+	}
+
+	/**
+	   Creates the position a FEN describes
+	   @param fen  the FEN
+	   @return the position
+	   @throws IllegalArgumentException if the FEN is not valid
+	 */
+	public static Position parse(String fen)
+	{
+		Position pos = new Position();
+		parse(fen, pos);
+		return pos;
+	}
+
+	/**
+	   Sets up a position from a FEN, reusing its storage
+	   @param fen  the FEN
+	   @param pos  the position to overwrite
+	   @throws IllegalArgumentException if the FEN is not valid
+	 */
+	public static void parse(String fen, Position pos)
+	{
+		int length = fen.length();
+		int end = fen.indexOf(' ');
+		if (end < 0)
+			end = length;
+
+		// The fields after the placement, which decide how the pawns are set up
+		int side = Position.WHITE;
+		long exceptions = 0L;
+		int halfmoveClock = 0;
+		int fullmoveNumber = 1;
+		int i = end + 1;
+		if (i < length)
+		{
+			char c = fen.charAt(i);
+			if (c == 'b')
+				side = Position.BLACK;
+			else if (c != 'w')
+				throw invalid(fen, "side to move must be w or b");
+			i = expectField(fen, i + 1);
+		}
+		if (i < length)
+		{
+			if (fen.charAt(i) == '-')
+				i++;
+			else
+			{
+				for (; i < length && fen.charAt(i) != ' '; i += 2)
+				{
+					int col = fen.charAt(i) - 'a';
+					int rank = i + 1 < length ? fen.charAt(i + 1) - '1' : -1;
+					if (col < 0 || col > 7 || rank < 0 || rank > 7)
+						throw invalid(fen, "bad pawn square");
+					exceptions |= 1L << (7 - rank) * 8 + col;
+				}
+			}
+			i = expectField(fen, i);
+		}
+		if (i < length)
+		{
+			halfmoveClock = number(fen, i);
+			i = expectField(fen, skipNumber(fen, i));
+		}
+		if (i < length)
+		{
+			fullmoveNumber = number(fen, i);
+			if (skipNumber(fen, i) != length || fullmoveNumber < 1)
+				throw invalid(fen, "bad fullmove number");
+		}
+
+		pos.clear();
+		int row = 0;
+		int col = 0;
+		for (i = 0; i < end; i++)
+		{
+			char c = fen.charAt(i);
+			if (c == '/')
+			{
+				if (col != 8 || ++row > 7)
+					throw invalid(fen, "rows must have 8 squares and be 8");
+				col = 0;
+			}
+			else if (c >= '1' && c <= '8')
+				col += c - '0';
+			else
+			{
+				int code = c < 128 ? PIECE_CODES[c] : Position.NO_PIECE;
+				if (code == Position.NO_PIECE)
+					throw invalid(fen, "unknown piece " + c);
+				if (col > 7)
+					throw invalid(fen, "row " + (8 - row) + " is too long");
+				int type = Position.typeOf(code);
+				int colour = Position.colourOf(code);
+				int sq = row * 8 + col;
+				boolean hasMoved = true;
+				if (type == Position.PAWN)
+				{
+					if (row == 0 || row == 7)
+						throw invalid(fen, "pawn on the first or last row");
+					hasMoved = row != (colour == Position.WHITE ? 6 : 1);
+					if ((exceptions & 1L << sq) != 0)
+					{
+						hasMoved = !hasMoved;
+						exceptions &= ~(1L << sq);
+					}
+				}
+				pos.addPiece(sq, type, colour, hasMoved);
+				col++;
+			}
+		}
+		if (row != 7 || col != 8)
+			throw invalid(fen, "rows must have 8 squares and be 8");
+		if (exceptions != 0)
+			throw invalid(fen, "exception on a square without a pawn");
+		pos.setSideToMove(side);
+		pos.setHalfmoveClock(halfmoveClock);
+		pos.setFullmoveNumber(fullmoveNumber);
+	}
+
+	// Index after the space that ends a field, or the end of the text
+	private static int expectField(String fen, int i)
+	{
+		if (i == fen.length())
+			return i;
+		if (fen.charAt(i) != ' ')
+			throw invalid(fen, "fields must be separated by one space");
+		return i + 1;
+	}
+
+	private static int number(String fen, int i)
+	{
+		int end = skipNumber(fen, i);
+		if (end == i || end - i > 9)
+			throw invalid(fen, "bad move counter");
+		int value = 0;
+		for (; i < end; i++)
+			value = value * 10 + fen.charAt(i) - '0';
+		return value;
+	}
+
+	private static int skipNumber(String fen, int i)
+	{
+		while (i < fen.length() && fen.charAt(i) >= '0' && fen.charAt(i) <= '9')
+			i++;
+		return i;
+	}
+
+	private static IllegalArgumentException invalid(String fen, String reason)
+	{
+		return new IllegalArgumentException("Bad FEN \"" + fen + "\": " + reason);
+	}
+
+	/**
+	   Writes a position as a FEN that parse reads back to the same position
+	   @param pos  the position
+	   @return the FEN
+	 */
+	public static String toString(Position pos)
+	{
+		StringBuilder fen = new StringBuilder(90);
+		for (int row = 0; row < 8; row++)
+		{
+			if (row > 0)
+				fen.append('/');
+			int empty = 0;
+			for (int col = 0; col < 8; col++)
+			{
+				int code = pos.getPiece(row * 8 + col);
+				if (code == Position.NO_PIECE)
+				{
+					empty++;
+					continue;
+				}
+				if (empty > 0)
+					fen.append((char) ('0' + empty));
+				empty = 0;
+				fen.append(PIECE_LETTERS.charAt(code));
+			}
+			if (empty > 0)
+				fen.append((char) ('0' + empty));
+		}
+		fen.append(pos.getSideToMove() == Position.WHITE ? " w " : " b ");
+
+		int exceptions = 0;
+		for (int colour = Position.WHITE; colour <= Position.BLACK; colour++)
+		{
+			long pawns = pos.getPieces(Position.PAWN, colour);
+			int startRow = colour == Position.WHITE ? 6 : 1;
+			while (pawns != 0)
+			{
+				int sq = Long.numberOfTrailingZeros(pawns);
+				pawns &= pawns - 1;
+				if (pos.hasMoved(sq) == (sq >> 3 == startRow))
+				{
+					fen.append(PackedMove.squareName(sq));
+					exceptions++;
+				}
+			}
+		}
+		if (exceptions == 0)
+			fen.append('-');
+		fen.append(' ').append(pos.getHalfmoveClock()).append(' ')
+				.append(pos.getFullmoveNumber());
+		return fen.toString();
+	}
+}
@@ -0,0 +1,126 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+   Reads the games of a game file, see GameRecord, one at a time, so that
+   files of any number of games can be scanned in little memory.
+ */
+public class GameReader implements Closeable
+{
+	private File file;
+
+	private DataInputStream in;
+
+	private long games;
+
+	/**
+	   Constructs a reader for a game file
+	   @param file  the game file
+	   @throws IOException if the file cannot be read or is not a game file
+	 */
+	public GameReader(File file) throws IOException
+	{
+		this.file = file;
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+				file), 1 << 16));
+		try
+		{
+			if (in.readLong() != GameRecord.MAGIC)
+				throw new IOException(file + ": not a game file");
+			int version = in.readInt();
+			if (version < 1 || version > GameRecord.VERSION)
+				throw new IOException(file + ": version " + version
+						+ " is not supported, expected " + GameRecord.VERSION);
+		}
+		catch (IOException e)
+		{
+			in.close();
+			throw e instanceof EOFException ? new IOException(file
+					+ ": not a game file") : e;
+		}
+	}
+
+	/**
+	   Checks whether a file starts like a game file
+	   @param file  the file
+	   @return whether the file is a game file
+	   @throws IOException if the file cannot be read
+	 */
+	public static boolean isGameFile(File file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file)))
+		{
+			return in.readLong() == GameRecord.MAGIC;
+		}
+		catch (EOFException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	   Reads the next game into a record, replacing what it held
+	   @param game  the record to fill in
+	   @return false if there are no more games
+	   @throws IOException if the file cannot be read or is damaged
+	 */
+	public boolean next(GameRecord game) throws IOException
+	{
+		int tag = in.read();
+		if (tag < 0)
+			return false;
+		boolean headerRead = false;
+		try
+		{
+			if (tag != GameRecord.GAME_TAG)
+				throw new IOException(file + ": game " + (games + 1)
+						+ " is damaged");
+			String white = in.readUTF();
+			String black = in.readUTF();
+			int whiteDifficulty = in.readUnsignedByte();
+			int blackDifficulty = in.readUnsignedByte();
+			game.setPlayers(white, black, whiteDifficulty, blackDifficulty);
+			String start = in.readUTF();
+			game.setStart(start.isEmpty() ? null : start);
+			game.clearMoves();
+			games++;
+			headerRead = true;
+			int move;
+			while ((move = in.readUnsignedShort()) != PackedMove.NONE)
+			{
+				if (move != GameRecord.TAKE_BACK)
+					game.addMove(move);
+				else if (game.getMoveCount() > 0)
+					game.removeMove();
+				else
+					throw new IOException(file + ": game " + games
+							+ " takes back a move it has not made");
+			}
+			game.setResult(in.readUnsignedByte());
+		}
+		catch (EOFException e)
+		{
+			// Written up to here by a program that stopped mid-game; without
+			// its players there is nothing of the game to read
+			if (!headerRead)
+				return false;
+			game.setResult(Engine.ONGOING);
+		}
+		return true;
+	}
+
+	public long getGames()
+	{
+		return games;
+	}
+
+	public void close() throws IOException
+	{
+		in.close();
+	}
+}
@@ -0,0 +1,180 @@
+/**
+   One played game: who played it, where it started, its moves and how it
+   ended, as stored in a game file by GameWriter and read back by
+   GameReader.
+
+   A game file starts with MAGIC and the format version, then holds the
+   games one after another. Each game is:
+
+   the byte GAME_TAG;
+   the names of the white and black players, each as modified UTF-8 after
+   its length in two bytes (DataOutput.writeUTF);
+   the difficulty of each side, a byte each, 0 for a person;
+   the starting position as a Fen, or an empty string for the usual start;
+   the moves, 2 bytes each, the PackedMove itself, which fits in 16 bits,
+   or TAKE_BACK, which removes the move before it;
+   PackedMove.NONE in 2 bytes, which is never a move, then the result as
+   one of Engine's result constants in a byte.
+
+   The result comes last because it is only known once the game is over,
+   so a game is written while it is played, take backs included. Version 1
+   files are the same without TAKE_BACK. A game cut off by the program
+   stopping is read back with the moves played and the result ONGOING.
+ */
+public class GameRecord
+{
+	// "antigame" in ASCII
+	static final long MAGIC = 0x616E746967616D65L;
+
+	public static final int VERSION = 2;
+
+	// Starts every game, so a reader can tell it has lost its place
+	static final int GAME_TAG = 'G';
+
+	// From and to the same square, which no move is
+	static final int TAKE_BACK = 1 | 1 << 6;
+
+	private String white;
+	private String black;
+	private int whiteDifficulty;
+	private int blackDifficulty;
+
+	// FEN of the starting position, null for the usual start
+	private String start;
+
+	private int[] moves;
+	private int moveCount;
+
+	private int result;
+
+	/**
+	   Constructs an empty record, for GameReader to fill in
+	 */
+	public GameRecord()
+	{
+		moves = new int[128];
+		result = Engine.ONGOING;
+	}
+
+	public String getWhite()
+	{
+		return white;
+	}
+
+	public String getBlack()
+	{
+		return black;
+	}
+
+	/**
+	   Gets the difficulty a side played at
+	   @param colour  the side
+	   @return the AI difficulty, 0 for a person
+	 */
+	public int getDifficulty(int colour)
+	{
+		return colour == Position.WHITE ? whiteDifficulty : blackDifficulty;
+	}
+
+	/**
+	   Gets the FEN of the position the game started from
+	   @return the FEN, or null if the game started from the usual position
+	 */
+	public String getStart()
+	{
+		return start;
+	}
+
+	/**
+	   Sets up the position the game started from
+	   @return a new position
+	 */
+	public Position getStartPosition()
+	{
+		return start == null ? Position.startPosition() : Fen.parse(start);
+	}
+
+	public int getMoveCount()
+	{
+		return moveCount;
+	}
+
+	/**
+	   Gets a move of the game
+	   @param ply  the index of the move, from 0
+	   @return the packed move
+	 */
+	public int getMove(int ply)
+	{
+		return moves[ply];
+	}
+
+	/**
+	   Gets how the game ended
+	   @return one of Engine's results, ONGOING if it was not finished
+	 */
+	public int getResult()
+	{
+		return result;
+	}
+
+	/**
+	   Gets the result from white's side as the book builder and the tuner
+	   count it
+	   @return 2 if white won, 1 for a draw, 0 if black won, -1 if the game
+	           was not finished
+	 */
+	public int getWhiteScore()
+	{
+		if (result == Engine.WHITE_WINS)
+			return 2;
+		if (result == Engine.DRAW)
+			return 1;
+		if (result == Engine.BLACK_WINS)
+			return 0;
+		return -1;
+	}
+
+	void setPlayers(String white, String black, int whiteDifficulty,
+			int blackDifficulty)
+	{
+		this.white = white;
+		this.black = black;
+		this.whiteDifficulty = whiteDifficulty;
+		this.blackDifficulty = blackDifficulty;
+	}
+
+	void setStart(String start)
+	{
+		this.start = start;
+	}
+
+	void setResult(int result)
+	{
+		this.result = result;
+	}
+
+	// Removes the moves, keeping the storage for the next game
+	void clearMoves()
+	{
+		moveCount = 0;
+		result = Engine.ONGOING;
+	}
+
+	// Removes the last move, for a move taken back
+	void removeMove()
+	{
+		moveCount--;
+	}
+
+	void addMove(int move)
+	{
+		if (moveCount == moves.length)
+		{
+			int[] grown = new int[moves.length * 2];
+			System.arraycopy(moves, 0, grown, 0, moveCount);
+			moves = grown;
+		}
+		moves[moveCount++] = move;
+	}
+}
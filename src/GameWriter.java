@@ -0,0 +1,181 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+   Appends games to a game file, see GameRecord, one move at a time as they
+   are played. Everything written is flushed at once, so the file holds
+   every move made even if the program is stopped mid-game.
+ */
+public class GameWriter
+{
+	private static GameWriter defaultWriter;
+
+	private File file;
+
+	private DataOutputStream out;
+
+	// Whether a game has been started and not ended
+	private boolean inGame;
+
+	/**
+	   Constructs a writer appending to a game file, which is created if it
+	   does not exist
+	   @param file  the game file
+	   @throws IOException if the file cannot be written or is not a game file
+	 */
+	public GameWriter(File file) throws IOException
+	{
+		this.file = file;
+		boolean isNew = file.length() == 0;
+		if (!isNew)
+		{
+			try (DataInputStream in = new DataInputStream(new FileInputStream(
+					file)))
+			{
+				if (in.readLong() != GameRecord.MAGIC)
+					throw new IOException(file + ": not a game file");
+				int version = in.readInt();
+				if (version != GameRecord.VERSION)
+					throw new IOException(file + ": version " + version
+							+ " is not supported, expected " + GameRecord.VERSION);
+			}
+		}
+		out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file, true)));
+		if (isNew)
+		{
+			out.writeLong(GameRecord.MAGIC);
+			out.writeInt(GameRecord.VERSION);
+			out.flush();
+		}
+	}
+
+	/**
+	   Gets the writer for the file named by -Dantichess.games that played
+	   games are kept in. Games are only kept if the property is set, and a
+	   file that cannot be written is reported and the games are not kept.
+	   @return the shared writer, or null if games are not kept
+	 */
+	public static synchronized GameWriter getDefault()
+	{
+		if (defaultWriter == null)
+		{
+			String name = System.getProperty("antichess.games");
+			if (name == null)
+				return null;
+			File file = new File(name);
+			try
+			{
+				defaultWriter = new GameWriter(file);
+			}
+			catch (IOException e)
+			{
+				System.err.println(e.getMessage() + ", games are not kept");
+				return null;
+			}
+		}
+		return defaultWriter;
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	   Starts a game. A game still open is ended first as unfinished.
+	   @param white            the name of the white player
+	   @param black            the name of the black player
+	   @param whiteDifficulty  white's AI difficulty, 0 for a person
+	   @param blackDifficulty  black's AI difficulty, 0 for a person
+	   @param start            the starting position
+	   @throws IOException if the file cannot be written
+	 */
+	public synchronized void startGame(String white, String black,
+			int whiteDifficulty, int blackDifficulty, Position start)
+			throws IOException
+	{
+		if (inGame)
+			endGame(Engine.ONGOING);
+		out.writeByte(GameRecord.GAME_TAG);
+		out.writeUTF(white);
+		out.writeUTF(black);
+		out.writeByte(whiteDifficulty);
+		out.writeByte(blackDifficulty);
+		String fen = Fen.toString(start);
+		out.writeUTF(fen.equals(Fen.START) ? "" : fen);
+		out.flush();
+		inGame = true;
+	}
+
+	/**
+	   Adds a move to the game started last
+	   @param move  the packed move
+	   @throws IOException if the file cannot be written
+	 */
+	public synchronized void writeMove(int move) throws IOException
+	{
+		if (!inGame)
+			throw new IllegalStateException("No game started");
+		out.writeShort(move);
+		out.flush();
+	}
+
+	/**
+	   Takes back the last move of the game started last, which a reader
+	   then leaves out of the game
+	   @throws IOException if the file cannot be written
+	 */
+	public synchronized void writeTakeBack() throws IOException
+	{
+		if (!inGame)
+			throw new IllegalStateException("No game started");
+		out.writeShort(GameRecord.TAKE_BACK);
+		out.flush();
+	}
+
+	/**
+	   Ends the game started last
+	   @param result  one of Engine's results
+	   @throws IOException if the file cannot be written
+	 */
+	public synchronized void endGame(int result) throws IOException
+	{
+		if (!inGame)
+			return;
+		out.writeShort(PackedMove.NONE);
+		out.writeByte(result);
+		out.flush();
+		inGame = false;
+	}
+
+	/**
+	   Writes a whole game
+	   @param game  the game
+	   @throws IOException if the file cannot be written
+	 */
+	public synchronized void write(GameRecord game) throws IOException
+	{
+		startGame(game.getWhite(), game.getBlack(),
+				game.getDifficulty(Position.WHITE),
+				game.getDifficulty(Position.BLACK), game.getStartPosition());
+		for (int i = 0; i < game.getMoveCount(); i++)
+			out.writeShort(game.getMove(i));
+		endGame(game.getResult());
+	}
+
+	/**
+	   Closes the file, ending a game still open as unfinished
+	   @throws IOException if the file cannot be written
+	 */
+	public synchronized void close() throws IOException
+	{
+		endGame(Engine.ONGOING);
+		out.close();
+	}
+}
@@ -1,8 +1,6 @@
 import java.awt.Point;
 import java.util.ArrayList;
 
-import javax.swing.ImageIcon;
-
 public class King extends Piece
 {
 
@@ -16,22 +14,16 @@ public class King extends Piece
 	{
 		// Call super
 		super(myRow, myCol, myColour);
-		// Select the piece's image depending on its color
-		if (myColour == 1)
-			image = new ImageIcon("images\\whiteKing.png").getImage();
-		else
-			image = new ImageIcon("images\\blackKing.png").getImage();
 	}
 
 	/**
-	   Finds all valid moves for this piece
+	   Finds all the moves of this piece, ignoring whether another piece must
+	   take
 	   @param board    the current board
-	   @param isForced check for forced moves
-	   @return legal move locations
+	   @return the move locations
 	 */
-	public ArrayList<Point> getMoveLocations(Piece[][] board, boolean isForced)
+	protected ArrayList<Point> findAllMoveLocations(Piece[][] board)
 	{
-		canTake = false;
 		// Handles out of bounds
 		int minRow = Math.max(-1, -row);   // min row index the king can move 
 		int maxRow = Math.min(1, 7 - row); // min row index the king can move 
@@ -58,26 +50,6 @@ public class King extends Piece
 			}
 		}
 
-		// If the piece may be forced to move, check for it
-		for (Point currLoc : moveLocations)
-		{
-			// Check each valid location to see if it contains a piece
-			if (board[currLoc.y][currLoc.x] != null)
-			{
-				// Modify valid moves
-				this.canTake = true;
-				ensureForcedTake(board, moveLocations);
-				return moveLocations;
-			}
-		}
-		// Check if another piece must take
-		if (oneCanTake)
-			moveLocations.clear();
 		return moveLocations;
 	}
-	
-	public boolean isAi()
-	{
-		return isAi;
-	}
 }
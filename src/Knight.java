@@ -1,8 +1,6 @@
 import java.awt.Point;
 import java.util.ArrayList;
 
-import javax.swing.ImageIcon;
-
 public class Knight extends Piece
 {
 
@@ -16,22 +14,16 @@ public class Knight extends Piece
 	{
 		// Call super
 		super(myRow, myCol, myColour);
-		// Select the piece's image depending on its colour
-		if (myColour == 1)
-			image = new ImageIcon("images\\whiteKnight.png").getImage();
-		else
-			image = new ImageIcon("images\\blackKnight.png").getImage();
 	}
 
 	/**
-	   Finds all valid moves for this piece
+	   Finds all the moves of this piece, ignoring whether another piece must
+	   take
 	   @param board    the current board
-	   @param isForced check for forced moves
-	   @return legal move locations
+	   @return the move locations
 	 */
-	public ArrayList<Point> getMoveLocations(Piece[][] board, boolean isForced)
+	protected ArrayList<Point> findAllMoveLocations(Piece[][] board)
 	{
-		canTake = false;
 		ArrayList<Point> moveLocations = new ArrayList<Point>();
 
 		// Check all possible directions for conflicts
@@ -122,24 +114,6 @@ public class Knight extends Piece
 			}
 		}
 
-		// If the piece may be forced to move, check for it
-		if (isForced)
-		{
-			// Check each valid location to see if it contains a piece
-			for (Point currLoc : moveLocations)
-			{
-				if (board[currLoc.y][currLoc.x] != null)
-				{
-					// Modify valid moves
-					this.canTake = true;
-					ensureForcedTake(board, moveLocations);
-					return moveLocations;
-				}
-			}
-			// Check if another piece must take
-			if (oneCanTake)
-				moveLocations.clear();
-		}
 		return moveLocations;
 	}
 }
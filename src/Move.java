@@ -1,30 +1,33 @@
-
 import java.awt.Point;
-import java.util.ArrayList;
 
 
+/**
+   A view of a packed move (see PackedMove) together with the pieces it
+   involves, for the GUI and public API. The search works on the packed int.
+ */
 public class Move {
 
-	private Piece piece;
+	private int packedMove;
 
-	private Point moveTo;
+	private Piece piece;
 
 	private Piece capturedPiece;
 
 	/**
-	   Constructs the Move object 
-	   @param myPiece      the piece making the move
-	   @param location     the location piece is moving to
-	   @param otherPiece   the piece (if any) that exist at the target location       
+	   Constructs the Move object from a packed move
+	   @param move    the packed move
+	   @param board   the board the move is played on
 	 */
-	public Move(Piece myPiece, Point location, Piece otherPiece)
+	public Move(int move, Piece[][] board)
 	{
-		piece = myPiece;
-		moveTo = location;
-		capturedPiece = otherPiece;
+		packedMove = move;
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		piece = board[from >> 3][from & 7];
+		capturedPiece = board[to >> 3][to & 7];
 	}
-	
-	 public Piece getCapturedPiece() { 
+
+	 public Piece getCapturedPiece() {
 	        return capturedPiece;
 	    }
 
@@ -34,7 +37,8 @@ public class Move {
 	 */
 	public Point getDestination()
 	{
-		return moveTo;
+		int to = PackedMove.to(packedMove);
+		return new Point(to & 7, to >> 3);
 	}
 
 	/**
@@ -46,7 +50,25 @@ public class Move {
 		return piece;
 	}
 
-	
+	/**
+	   Gets the type the piece promotes to
+	   @return the promotion type, or Position.NO_PIECE if the move does not promote
+	 */
+	public int getPromotion()
+	{
+		return PackedMove.promotion(packedMove);
+	}
+
+	/**
+	   Gets the move in the packed form used by the search
+	   @return the packed move
+	 */
+	public int getPackedMove()
+	{
+		return packedMove;
+	}
+
+
 	/**
 	   Gives the score for the piece that is being taken
 	   @param  toTake the piece that is being captured
@@ -73,7 +95,7 @@ public class Move {
 	        }
 	        return takeScore;
 	    }
-	
+
 	public int getScore() {
 		return takeScore(this.capturedPiece);
 	}
@@ -0,0 +1,147 @@
+/**
+   Generates antichess moves for a Position as packed ints (see PackedMove).
+   Moves are written into preallocated per-ply buffers so the search does not
+   create any objects while generating.
+ */
+public class MoveGenerator
+{
+	// Upper bound on the number of moves in a position
+	public static final int MAX_MOVES = 256;
+
+	private int[][] buffers;
+
+	/**
+	   Constructs a generator with one move buffer per ply
+	   @param maxPly  the number of plies to keep buffers for
+	 */
+	public MoveGenerator(int maxPly)
+	{
+		buffers = new int[maxPly][MAX_MOVES];
+	}
+
+	/**
+	   Gets the move buffer for a ply
+	   @param ply  the distance from the root
+	   @return the buffer filled by the last generate call for that ply
+	 */
+	public int[] getMoves(int ply)
+	{
+		return buffers[ply];
+	}
+
+	/**
+	   Generates the legal moves for the side to move into the ply's buffer
+	   @param pos  the position
+	   @param ply  the distance from the root
+	   @return the number of moves generated
+	 */
+	public int generate(Position pos, int ply)
+	{
+		return generateLegal(pos, buffers[ply]);
+	}
+
+	/**
+	   Generates the legal antichess moves for the side to move in one pass
+	   over its pieces. Quiet moves are collected until the first capture is
+	   found; from then on the quiet moves are dropped and only captures are
+	   generated, since a capture must be made when one is available.
+	   @param pos    the position
+	   @param moves  the buffer to write the moves into
+	   @return the number of moves written
+	 */
+	public static int generateLegal(Position pos, int[] moves)
+	{
+		int us = pos.getSideToMove();
+		long occupied = pos.getOccupied();
+		long enemies = pos.getOccupied(Position.opponent(us));
+		int count = 0;
+		boolean captures = false;
+
+		// Pawns take diagonally and move straight ahead
+		long pawns = pos.getPieces(Position.PAWN, us);
+		int forward = us == Position.WHITE ? -1 : 1;
+		while (pawns != 0)
+		{
+			int from = Long.numberOfTrailingZeros(pawns);
+			pawns &= pawns - 1;
+			int row = from >> 3;
+			int col = from & 7;
+			int toRow = row + forward;
+			if (toRow < 0 || toRow > 7)
+				continue;
+			long takes = Attacks.PAWN[us][from] & enemies;
+			if (takes != 0)
+			{
+				if (!captures)
+				{
+					captures = true;
+					count = 0;
+				}
+				while (takes != 0)
+				{
+					int to = Long.numberOfTrailingZeros(takes);
+					takes &= takes - 1;
+					count = addPawnMove(moves, count, from, to, true);
+				}
+			}
+			else if (!captures && (occupied & (1L << (toRow * 8 + col))) == 0)
+			{
+				count = addPawnMove(moves, count, from, toRow * 8 + col, false);
+				int twoRow = row + 2 * forward;
+				if (!pos.hasMoved(from) && twoRow >= 0 && twoRow <= 7
+						&& (occupied & (1L << (twoRow * 8 + col))) == 0)
+					count = addPawnMove(moves, count, from, twoRow * 8 + col, false);
+			}
+		}
+
+		// Every other piece, with its attacks found once
+		long pieces = pos.getOccupied(us) & ~pos.getPieces(Position.PAWN, us);
+		while (pieces != 0)
+		{
+			int from = Long.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+			long attacks = Attacks.of(Position.typeOf(pos.getPiece(from)), from,
+					occupied);
+			long takes = attacks & enemies;
+			if (takes != 0)
+			{
+				if (!captures)
+				{
+					captures = true;
+					count = 0;
+				}
+				count = addMoves(moves, count, from, takes, true);
+			}
+			else if (!captures)
+				count = addMoves(moves, count, from, attacks & ~occupied, false);
+		}
+		return count;
+	}
+
+	private static int addPawnMove(int[] moves, int count, int from, int to,
+			boolean capture)
+	{
+		int toRow = to >> 3;
+		if (toRow == 0 || toRow == 7)
+		{
+			// Antichess allows promoting to a king as well
+			for (int type = Position.KNIGHT; type <= Position.KING; type++)
+				moves[count++] = PackedMove.encode(from, to, type, capture);
+			return count;
+		}
+		moves[count++] = PackedMove.encode(from, to, Position.NO_PIECE, capture);
+		return count;
+	}
+
+	private static int addMoves(int[] moves, int count, int from,
+			long destinations, boolean capture)
+	{
+		while (destinations != 0)
+		{
+			int to = Long.numberOfTrailingZeros(destinations);
+			destinations &= destinations - 1;
+			moves[count++] = PackedMove.encode(from, to, Position.NO_PIECE, capture);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,140 @@
+/**
+   Orders moves for the search so that alpha-beta cutoffs come early.
+   The principal variation move goes first, then the transposition table
+   move, then captures by the value of the piece taken (as in Move.takeScore),
+   then killer moves and finally quiet moves by their history score.
+ */
+public class MoveOrderer
+{
+	private static final int PV_SCORE = 1 << 30;
+	private static final int TT_SCORE = PV_SCORE - 1;
+	private static final int CAPTURE_SCORE = 1 << 28;
+	private static final int KILLER_SCORE = 1 << 27;
+
+	// Value of taking each piece type, higher is better, as in Move.takeScore
+	private static final int[] TAKE_SCORE = { -3, 2, 2, 3, -2, 4 };
+
+	// Two quiet moves per ply that recently caused a cutoff
+	private int[][] killers;
+
+	// How often a quiet move of a piece to a square caused a cutoff, by depth
+	private int[][] history;
+
+	/**
+	   Constructs an orderer with killer slots for every ply
+	   @param maxPly  the deepest ply searched
+	 */
+	public MoveOrderer(int maxPly)
+	{
+		killers = new int[maxPly][2];
+		history = new int[12][64];
+	}
+
+	/**
+	   Forgets the killers and ages the history before a new search
+	 */
+	public void newSearch()
+	{
+		for (int[] plyKillers : killers)
+		{
+			plyKillers[0] = PackedMove.NONE;
+			plyKillers[1] = PackedMove.NONE;
+		}
+		for (int[] pieceHistory : history)
+		{
+			for (int sq = 0; sq < 64; sq++)
+				pieceHistory[sq] >>= 1;
+		}
+	}
+
+	/**
+	   Scores the moves of a position for ordering
+	   @param pos     the position the moves are for
+	   @param moves   the moves
+	   @param scores  receives the score of each move
+	   @param count   the number of moves
+	   @param pvMove  the principal variation move, PackedMove.NONE if none
+	   @param ttMove  the transposition table move, PackedMove.NONE if none
+	   @param ply     the distance from the root
+	 */
+	public void scoreMoves(Position pos, int[] moves, int[] scores, int count,
+			int pvMove, int ttMove, int ply)
+	{
+		int killer1 = killers[ply][0];
+		int killer2 = killers[ply][1];
+		for (int i = 0; i < count; i++)
+		{
+			int move = moves[i];
+			int from = PackedMove.from(move);
+			int to = PackedMove.to(move);
+			if (move == pvMove)
+				scores[i] = PV_SCORE;
+			else if (move == ttMove)
+				scores[i] = TT_SCORE;
+			else if (PackedMove.isCapture(move))
+				scores[i] = CAPTURE_SCORE
+						+ TAKE_SCORE[Position.typeOf(pos.getPiece(to))] * 16
+						- TAKE_SCORE[Position.typeOf(pos.getPiece(from))];
+			else if (move == killer1 || move == killer2)
+				scores[i] = move == killer1 ? KILLER_SCORE + 1 : KILLER_SCORE;
+			else
+				scores[i] = history[pos.getPiece(from)][to];
+		}
+	}
+
+	/**
+	   Brings the best scored move not yet tried to the given index
+	   @param moves   the moves
+	   @param scores  the score of each move
+	   @param count   the number of moves
+	   @param index   the index of the next move to try
+	   @return the move to try next
+	 */
+	public int pickNext(int[] moves, int[] scores, int count, int index)
+	{
+		int best = index;
+		for (int i = index + 1; i < count; i++)
+		{
+			if (scores[i] > scores[best])
+				best = i;
+		}
+		int move = moves[best];
+		moves[best] = moves[index];
+		moves[index] = move;
+		int score = scores[best];
+		scores[best] = scores[index];
+		scores[index] = score;
+		return move;
+	}
+
+	/**
+	   Remembers a quiet move that caused a beta cutoff
+	   @param piece  the piece code of the moving piece
+	   @param move   the move
+	   @param depth  the remaining depth where the cutoff happened
+	   @param ply    the distance from the root
+	 */
+	public void recordCutoff(int piece, int move, int depth, int ply)
+	{
+		if (PackedMove.isCapture(move))
+			return;
+		if (killers[ply][0] != move)
+		{
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		int[] pieceHistory = history[piece];
+		int to = PackedMove.to(move);
+		pieceHistory[to] += depth * depth;
+
+		// Keep history below the killer scores
+		if (pieceHistory[to] >= KILLER_SCORE)
+		{
+			for (int[] row : history)
+			{
+				for (int sq = 0; sq < 64; sq++)
+					row[sq] >>= 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,201 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+   An opening book: the moves played from positions early in the game,
+   weighted by how well they did, read from a file written by
+   OpeningBookBuilder.
+
+   The file is a sequence of 16 byte records. The first is a header holding
+   MAGIC, the format version and the number of entries. Each entry holds the
+   Zobrist hash of a position, a packed move played from it and the move's
+   weight. Entries are sorted by hash, and by weight from highest down for
+   one hash, so the moves of a position are found by binary search of the
+   file, which is memory mapped and never read onto the heap.
+ */
+public class OpeningBook
+{
+	public static final int VERSION = 1;
+
+	// "antibook" in ASCII
+	static final long MAGIC = 0x616E7469626F6F6BL;
+
+	static final int RECORD_BYTES = 16;
+
+	// Byte offsets of the fields of an entry
+	private static final int MOVE = 8;
+	private static final int WEIGHT = 12;
+
+	private static OpeningBook defaultBook;
+
+	// The whole file, null if there is none
+	private ByteBuffer entries;
+
+	private int entryCount;
+
+	// An empty book
+	private OpeningBook()
+	{
+	}
+
+	/**
+	   Constructs a book reading a file. A missing file gives an empty book.
+	   @param file  the book file
+	   @throws IOException if the file cannot be read or is not a book
+	 */
+	public OpeningBook(File file) throws IOException
+	{
+		if (!file.exists())
+			return;
+		try (RandomAccessFile in = new RandomAccessFile(file, "r"))
+		{
+			if (in.length() < RECORD_BYTES || in.length() > Integer.MAX_VALUE)
+				throw new IOException(file + ": not an opening book");
+			entries = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					in.length());
+		}
+		if (entries.getLong(0) != MAGIC)
+			throw new IOException(file + ": not an opening book");
+		if (entries.getInt(MOVE) != VERSION)
+			throw new IOException(file + ": version " + entries.getInt(MOVE)
+					+ " is not supported, expected " + VERSION);
+		entryCount = entries.getInt(WEIGHT);
+		if ((long) (entryCount + 1) * RECORD_BYTES != entries.limit())
+			throw new IOException(file + ": expected " + entryCount
+					+ " entries, the file is cut short or too long");
+	}
+
+	/**
+	   Gets the book named by -Dantichess.book, by default "book.bin", which
+	   AiPlayer plays from. A book that cannot be read is reported and left
+	   empty.
+	   @return the shared book
+	 */
+	public static synchronized OpeningBook getDefault()
+	{
+		if (defaultBook == null)
+		{
+			File file = new File(System.getProperty("antichess.book", "book.bin"));
+			try
+			{
+				defaultBook = new OpeningBook(file);
+			}
+			catch (IOException e)
+			{
+				System.err.println(e.getMessage() + ", playing without a book");
+				defaultBook = new OpeningBook();
+			}
+		}
+		return defaultBook;
+	}
+
+	public int getEntryCount()
+	{
+		return entryCount;
+	}
+
+	/**
+	   Finds the moves of a position
+	   @param hash   the Zobrist hash of the position
+	   @param moves  the buffer to write the packed moves into, best first
+	   @param weights the buffer to write the weight of each move into
+	   @return the number of moves, at most the length of the buffers
+	 */
+	public int probe(long hash, int[] moves, int[] weights)
+	{
+		// First entry whose hash is not below the one looked for
+		int low = 1;
+		int high = entryCount + 1;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (hash(middle) < hash)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		int count = 0;
+		for (int i = low; i <= entryCount && count < moves.length
+				&& hash(i) == hash; i++)
+		{
+			moves[count] = entries.getInt(i * RECORD_BYTES + MOVE);
+			weights[count] = entries.getInt(i * RECORD_BYTES + WEIGHT);
+			count++;
+		}
+		return count;
+	}
+
+	private long hash(int record)
+	{
+		return entries.getLong(record * RECORD_BYTES);
+	}
+
+	/**
+	   Picks a book move for a position. With no variety the move with the
+	   highest weight is played; otherwise moves whose weight is at least
+	   (100 - variety) percent of the highest are candidates, chosen at
+	   random in proportion to their weights.
+	   @param pos      the position
+	   @param variety  0 to 100, how far from the best move the choice may go
+	   @param random   the source of the choice
+	   @return a legal packed move, or PackedMove.NONE if the position is not
+	           in the book
+	 */
+	public int choose(Position pos, int variety, Random random)
+	{
+		if (entryCount == 0)
+			return PackedMove.NONE;
+		int[] bookMoves = new int[MoveGenerator.MAX_MOVES];
+		int[] weights = new int[MoveGenerator.MAX_MOVES];
+		int[] legal = new int[MoveGenerator.MAX_MOVES];
+		int bookCount = probe(pos.getHash(), bookMoves, weights);
+		int legalCount = MoveGenerator.generateLegal(pos, legal);
+
+		// Keep the candidates that are legal here, since another position
+		// can share the hash
+		int cutoff = 0;
+		long total = 0;
+		int candidates = 0;
+		for (int i = 0; i < bookCount; i++)
+		{
+			int move = legalMove(bookMoves[i], legal, legalCount);
+			if (move == PackedMove.NONE)
+				continue;
+			if (candidates == 0)
+				cutoff = (int) ((long) weights[i] * (100 - variety) / 100);
+			if (weights[i] < cutoff)
+				break;
+			bookMoves[candidates] = move;
+			weights[candidates] = weights[i];
+			total += weights[i];
+			candidates++;
+		}
+		if (candidates == 0)
+			return PackedMove.NONE;
+
+		long pick = (long) (random.nextDouble() * total);
+		for (int i = 0; i < candidates - 1; i++)
+		{
+			pick -= weights[i];
+			if (pick < 0)
+				return bookMoves[i];
+		}
+		return bookMoves[candidates - 1];
+	}
+
+	private static int legalMove(int move, int[] legal, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			if (PackedMove.from(legal[i]) == PackedMove.from(move)
+					&& PackedMove.to(legal[i]) == PackedMove.to(move)
+					&& PackedMove.promotion(legal[i]) == PackedMove.promotion(move))
+				return legal[i];
+		}
+		return PackedMove.NONE;
+	}
+}
@@ -0,0 +1,374 @@
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+   Builds an OpeningBook file from game records. Every move of the first
+   plies of each finished game is counted for the position it was played
+   from, weighted 2 for a move by the side that went on to win, 1 for a draw
+   and 0 for a loss, so moves that only ever lost are left out.
+
+   Games are read from game files that GameWriter keeps, from PGN, with
+   moves in standard algebraic notation, or from the text Engine's main
+   prints, one game per line in coordinate notation. PGN and text may be
+   mixed in one file: a game is the moves up to its result, 1-0,
+   0-1, 1/2-1/2 or *, and tag pairs, comments, variations, move numbers and
+   annotations are skipped. Games with a FEN tag do not start from the
+   starting position and are skipped as a whole.
+   Usage: java OpeningBookBuilder out [maxPlies] games...
+ */
+public class OpeningBookBuilder
+{
+	private static final String PIECE_LETTERS = "PNBRQK";
+
+	// Plies of each game counted when no other depth is given
+	public static final int DEFAULT_PLIES = 20;
+
+	private int maxPlies;
+
+	// Summed weight of each move by position hash
+	private Map<Long, Map<Integer, Integer>> weights;
+
+	private long games;
+
+	/**
+	   Constructs a builder counting the first plies of every game
+	   @param maxPlies  the plies of each game to count
+	 */
+	public OpeningBookBuilder(int maxPlies)
+	{
+		this.maxPlies = maxPlies;
+		weights = new HashMap<Long, Map<Integer, Integer>>();
+	}
+
+	public long getGames()
+	{
+		return games;
+	}
+
+	/**
+	   Counts the moves of every finished game in a file
+	   @param file  a game file, a PGN file or a file of Engine's text games
+	   @throws IOException if the file cannot be read or has a move that is
+	           not legal
+	 */
+	public void read(File file) throws IOException
+	{
+		if (GameReader.isGameFile(file))
+		{
+			readGames(file);
+			return;
+		}
+		try (BufferedReader in = new BufferedReader(new FileReader(file)))
+		{
+			List<Integer> moves = new ArrayList<Integer>();
+			Position pos = Position.startPosition();
+			int[] legal = new int[MoveGenerator.MAX_MOVES];
+			boolean skipGame = false;
+			int commentDepth = 0;
+			int variationDepth = 0;
+			int lineNumber = 0;
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				lineNumber++;
+				line = line.trim();
+				if (commentDepth == 0 && line.startsWith("["))
+				{
+					if (line.startsWith("[FEN "))
+						skipGame = true;
+					continue;
+				}
+				if (line.startsWith("%"))
+					continue;
+
+				// Pad the brackets so that they split off as tokens of their own
+				line = line.replaceAll("([{}()])", " $1 ");
+				for (String token : line.split("\\s+"))
+				{
+					if (token.isEmpty())
+						continue;
+					if (commentDepth > 0)
+					{
+						if (token.equals("}"))
+							commentDepth = 0;
+						continue;
+					}
+					if (token.equals("{"))
+					{
+						commentDepth = 1;
+						continue;
+					}
+					if (token.startsWith(";"))
+						break; // The rest of the line is a comment
+					if (token.equals("("))
+						variationDepth++;
+					else if (token.equals(")"))
+						variationDepth = Math.max(0, variationDepth - 1);
+					if (variationDepth > 0 || token.equals(")"))
+						continue;
+
+					int result = result(token);
+					if (result >= 0 || token.equals("*"))
+					{
+						if (result >= 0 && !skipGame)
+							addGame(moves, result);
+						moves.clear();
+						pos = Position.startPosition();
+						skipGame = false;
+						continue;
+					}
+					if (skipGame || moves.size() >= maxPlies)
+						continue;
+
+					// Move numbers such as 12. and 12... and annotations $3
+					token = token.replaceFirst("^\\d+\\.+", "");
+					if (token.isEmpty() || token.startsWith("$"))
+						continue;
+					int count = MoveGenerator.generateLegal(pos, legal);
+					int move = parseMove(token, pos, legal, count);
+					if (move == PackedMove.NONE)
+						throw new IOException(file + ":" + lineNumber
+								+ ": illegal move " + token);
+					moves.add(move);
+					pos.makeMove(move);
+				}
+			}
+		}
+	}
+
+	// Counts the games of a game file that start from the starting position
+	private void readGames(File file) throws IOException
+	{
+		GameRecord game = new GameRecord();
+		List<Integer> moves = new ArrayList<Integer>();
+		int[] legal = new int[MoveGenerator.MAX_MOVES];
+		try (GameReader in = new GameReader(file))
+		{
+			while (in.next(game))
+			{
+				if (game.getStart() != null || game.getWhiteScore() < 0)
+					continue;
+				moves.clear();
+				Position pos = Position.startPosition();
+				for (int i = 0; i < game.getMoveCount() && i < maxPlies; i++)
+				{
+					int move = game.getMove(i);
+					if (!contains(legal, MoveGenerator.generateLegal(pos, legal),
+							move))
+						throw new IOException(file + ": game " + in.getGames()
+								+ ": illegal move " + PackedMove.toString(move));
+					moves.add(move);
+					pos.makeMove(move);
+				}
+				addGame(moves, game.getWhiteScore());
+			}
+		}
+	}
+
+	private static boolean contains(int[] moves, int count, int move)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			if (moves[i] == move)
+				return true;
+		}
+		return false;
+	}
+
+	// Result from white's side: 2 for a win, 1 for a draw, 0 for a loss
+	private static int result(String token)
+	{
+		if (token.equals("1-0"))
+			return 2;
+		if (token.equals("0-1"))
+			return 0;
+		if (token.equals("1/2-1/2"))
+			return 1;
+		return -1;
+	}
+
+	private void addGame(List<Integer> moves, int result)
+	{
+		games++;
+		Position pos = Position.startPosition();
+		for (int move : moves)
+		{
+			int weight = pos.getSideToMove() == Position.WHITE ? result
+					: 2 - result;
+			Map<Integer, Integer> moveWeights = weights.get(pos.getHash());
+			if (moveWeights == null)
+			{
+				moveWeights = new HashMap<Integer, Integer>();
+				weights.put(pos.getHash(), moveWeights);
+			}
+			Integer sum = moveWeights.get(move);
+			moveWeights.put(move, sum == null ? weight : sum + weight);
+			pos.makeMove(move);
+		}
+	}
+
+	/**
+	   Finds the legal move a token names, in coordinate notation such as
+	   e2e4 and b2a1q or in standard algebraic notation such as Nf3, exd5,
+	   Rad1 and e8=K. Check marks and annotation signs are ignored.
+	   @param text   the move
+	   @param pos    the position the move is played in
+	   @param legal  the legal moves of the position
+	   @param count  the number of legal moves
+	   @return the packed move, or PackedMove.NONE if no legal move matches
+	 */
+	static int parseMove(String text, Position pos, int[] legal, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			if (PackedMove.toString(legal[i]).equals(text))
+				return legal[i];
+		}
+
+		String san = text.replaceAll("[+#!?]", "").replace("x", "")
+				.replace("-", "");
+		int promotion = Position.NO_PIECE;
+		int equals = san.indexOf('=');
+		if (equals >= 0)
+		{
+			if (equals + 2 != san.length())
+				return PackedMove.NONE;
+			promotion = PIECE_LETTERS.indexOf(Character.toUpperCase(san
+					.charAt(equals + 1)));
+			san = san.substring(0, equals);
+		}
+		else if (san.length() > 2
+				&& PIECE_LETTERS.indexOf(san.charAt(san.length() - 1)) > 0
+				&& Character.isDigit(san.charAt(san.length() - 2)))
+		{
+			promotion = PIECE_LETTERS.indexOf(san.charAt(san.length() - 1));
+			san = san.substring(0, san.length() - 1);
+		}
+		if (san.length() < 2 || promotion == Position.PAWN)
+			return PackedMove.NONE;
+
+		int type = Position.PAWN;
+		if (PIECE_LETTERS.indexOf(san.charAt(0)) > 0)
+		{
+			type = PIECE_LETTERS.indexOf(san.charAt(0));
+			san = san.substring(1);
+		}
+		if (san.length() < 2)
+			return PackedMove.NONE;
+		int to = square(san.substring(san.length() - 2));
+		if (to < 0)
+			return PackedMove.NONE;
+
+		// What is left is the file, rank or square the piece moves from, if
+		// more than one piece of the type could reach the square
+		String from = san.substring(0, san.length() - 2);
+		int move = PackedMove.NONE;
+		for (int i = 0; i < count; i++)
+		{
+			int sq = PackedMove.from(legal[i]);
+			if (PackedMove.to(legal[i]) != to
+					|| PackedMove.promotion(legal[i]) != promotion
+					|| Position.typeOf(pos.getPiece(sq)) != type
+					|| !PackedMove.squareName(sq).contains(from))
+				continue;
+			if (move != PackedMove.NONE)
+				return PackedMove.NONE; // Ambiguous
+			move = legal[i];
+		}
+		return move;
+	}
+
+	// Square of a name such as e4, -1 if it is not one
+	private static int square(String name)
+	{
+		int col = name.charAt(0) - 'a';
+		int rank = name.charAt(1) - '1';
+		if (col < 0 || col > 7 || rank < 0 || rank > 7)
+			return -1;
+		return (7 - rank) * 8 + col;
+	}
+
+	/**
+	   Writes the counted moves as a book file, sorted for OpeningBook
+	   @param file  the file to write
+	   @return the number of entries written
+	   @throws IOException if the file cannot be written
+	 */
+	public int write(File file) throws IOException
+	{
+		List<long[]> entries = new ArrayList<long[]>();
+		for (Map.Entry<Long, Map<Integer, Integer>> position : weights.entrySet())
+		{
+			for (Map.Entry<Integer, Integer> move : position.getValue().entrySet())
+			{
+				if (move.getValue() > 0)
+					entries.add(new long[] { position.getKey(), move.getKey(),
+							move.getValue() });
+			}
+		}
+		Collections.sort(entries, new Comparator<long[]>() {
+			public int compare(long[] a, long[] b)
+			{
+				if (a[0] != b[0])
+					return Long.compare(a[0], b[0]);
+				if (a[2] != b[2])
+					return Long.compare(b[2], a[2]);
+				return Long.compare(a[1], b[1]);
+			}
+		});
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file))))
+		{
+			out.writeLong(OpeningBook.MAGIC);
+			out.writeInt(OpeningBook.VERSION);
+			out.writeInt(entries.size());
+			for (long[] entry : entries)
+			{
+				out.writeLong(entry[0]);
+				out.writeInt((int) entry[1]);
+				out.writeInt((int) entry[2]);
+			}
+		}
+		return entries.size();
+	}
+
+	/**
+	   Builds a book from game files
+	   @param args  the book file to write, optionally the plies of each game
+	                to count, then the game files
+	   @throws IOException if a file cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: java OpeningBookBuilder out [maxPlies] games...");
+			return;
+		}
+		int first = 1;
+		int maxPlies = DEFAULT_PLIES;
+		if (args[1].matches("\\d+"))
+		{
+			maxPlies = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		OpeningBookBuilder builder = new OpeningBookBuilder(maxPlies);
+		for (int i = first; i < args.length; i++)
+			builder.read(new File(args[i]));
+		int entries = builder.write(new File(args[0]));
+		System.out.println(builder.getGames() + " games, " + entries
+				+ " entries");
+	}
+}
@@ -0,0 +1,80 @@
+/**
+   Helpers for moves packed into an int, used by the move generator and the
+   search so that no objects are created per move.
+   Bits 0-5 hold the from square, bits 6-11 the to square, bits 12-14 the
+   promotion type (0 when the move does not promote, since a pawn is never a
+   promotion target) and bit 15 is set for captures.
+ */
+public final class PackedMove
+{
+	public static final int NONE = 0;
+
+	private static final int CAPTURE_FLAG = 1 << 15;
+
+	private PackedMove()
+	{
+	}
+
+	/**
+	   Packs a move into an int
+	   @param from       the square the piece moves from
+	   @param to         the square the piece moves to
+	   @param promotion  the type a pawn promotes to, Position.NO_PIECE if none
+	   @param capture    whether the move takes a piece
+	   @return the packed move
+	 */
+	public static int encode(int from, int to, int promotion, boolean capture)
+	{
+		int move = from | to << 6;
+		if (promotion != Position.NO_PIECE)
+			move |= promotion << 12;
+		if (capture)
+			move |= CAPTURE_FLAG;
+		return move;
+	}
+
+	public static int from(int move)
+	{
+		return move & 63;
+	}
+
+	public static int to(int move)
+	{
+		return move >>> 6 & 63;
+	}
+
+	public static int promotion(int move)
+	{
+		int type = move >>> 12 & 7;
+		return type == 0 ? Position.NO_PIECE : type;
+	}
+
+	public static boolean isCapture(int move)
+	{
+		return (move & CAPTURE_FLAG) != 0;
+	}
+
+	/**
+	   Gives the name of a square, e.g. e2
+	   @param sq  the square index
+	   @return the square name
+	 */
+	public static String squareName(int sq)
+	{
+		return "" + (char) ('a' + (sq & 7)) + (8 - (sq >> 3));
+	}
+
+	/**
+	   Writes a move in coordinate notation, e.g. e2e4 or b2a1q
+	   @param move  the packed move
+	   @return the move as text
+	 */
+	public static String toString(int move)
+	{
+		String text = squareName(from(move)) + squareName(to(move));
+		int promotion = promotion(move);
+		if (promotion != Position.NO_PIECE)
+			text += "pnbrqk".charAt(promotion);
+		return text;
+	}
+}
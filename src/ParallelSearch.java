@@ -0,0 +1,248 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+   Searches one root position on several threads at once (Lazy SMP). Every
+   thread runs its own Search on its own copy of the position, and all of them
+   share one transposition table, so helpers fill the table with results the
+   main search then finds. The main search decides when to stop; the move of
+   whichever thread completed the deepest iteration is played.
+   The thread count comes from -Dantichess.threads.
+ */
+public class ParallelSearch
+{
+	private TranspositionTable transpositionTable;
+
+	// Index 0 is the main search, run on the calling thread
+	private Search[] workers;
+
+	// Shared by all searches, idle helper threads exit after a minute
+	private static final ExecutorService helperPool = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "search-helper");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	// The worker whose result was used by the last search
+	private Search chosen;
+
+	// Set by stop and cleared only by clearStop, so a stop that comes before
+	// a search has started stops it as soon as it does
+	private volatile boolean stopRequested;
+
+	private SearchStats stats;
+
+	/**
+	   Constructs a parallel search sized by the antichess.threads and
+	   antichess.tt.mb system properties
+	 */
+	public ParallelSearch()
+	{
+		this(new TranspositionTable(), Integer.getInteger("antichess.threads", 1));
+	}
+
+	/**
+	   Constructs a parallel search
+	   @param table    the table shared by all threads
+	   @param threads  the number of threads to search with
+	 */
+	public ParallelSearch(TranspositionTable table, int threads)
+	{
+		transpositionTable = table;
+		workers = new Search[Math.max(1, threads)];
+		for (int i = 0; i < workers.length; i++)
+			workers[i] = new Search(table, i);
+		chosen = workers[0];
+		stats = new SearchStats();
+	}
+
+	public int getThreadCount()
+	{
+		return workers.length;
+	}
+
+	/**
+	   Sets the deepest iteration every thread searches to
+	   @param depth  the maximum depth in plies
+	 */
+	public void setMaxDepth(int depth)
+	{
+		for (Search worker : workers)
+			worker.setMaxDepth(depth);
+	}
+
+	/**
+	   Sets how long a search may take. Only the main search watches the
+	   clock; helpers are stopped when it finishes.
+	   @param millis  the time budget in milliseconds, 0 for no limit
+	 */
+	public void setTimeLimit(long millis)
+	{
+		workers[0].setTimeLimit(millis);
+	}
+
+	/**
+	   Sets how many nodes the main search may visit
+	   @param limit  the node budget, 0 for no limit
+	 */
+	public void setNodeLimit(long limit)
+	{
+		workers[0].setNodeLimit(limit);
+	}
+
+	/**
+	   Sets the evaluation weights of every thread
+	   @param params  the weights, or null to use Evaluation.getParams()
+	 */
+	public void setEvalParams(EvalParams params)
+	{
+		for (Search worker : workers)
+			worker.setEvalParams(params);
+	}
+
+	/**
+	   Asks all threads to stop as soon as possible. The request holds until
+	   clearStop, so a search that has not started yet stops at once.
+	 */
+	public void stop()
+	{
+		stopRequested = true;
+		for (Search worker : workers)
+			worker.stop();
+	}
+
+	/**
+	   Forgets a stop request, before a new search is asked for
+	 */
+	public void clearStop()
+	{
+		stopRequested = false;
+	}
+
+	/**
+	   Searches a position for the best move on all threads
+	   @param root  the position to search, left unchanged
+	   @return the best move found, or PackedMove.NONE if there are no moves
+	 */
+	public int search(final Position root)
+	{
+		transpositionTable.newSearch();
+		for (Search worker : workers)
+			worker.prepare();
+		// Checked after prepare, as stop sets the request before the workers' flags
+		if (stopRequested)
+			stop();
+
+		Future<?>[] helpers = new Future<?>[workers.length - 1];
+		for (int i = 1; i < workers.length; i++)
+		{
+			final Search helper = workers[i];
+			helpers[i - 1] = helperPool.submit(new Runnable() {
+				public void run()
+				{
+					helper.iterate(root);
+				}
+			});
+		}
+
+		int bestMove = workers[0].iterate(root);
+
+		// The main search is done, so the helpers have nothing left to add
+		for (int i = 1; i < workers.length; i++)
+			workers[i].stop();
+		for (Future<?> helper : helpers)
+		{
+			try
+			{
+				helper.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		chosen = workers[0];
+		stats.clear();
+		for (Search worker : workers)
+		{
+			stats.add(worker.getStats());
+			if (worker.getCompletedDepth() > chosen.getCompletedDepth())
+				chosen = worker;
+		}
+		int[] pv = chosen.getPrincipalVariation();
+		return pv.length > 0 ? pv[0] : bestMove;
+	}
+
+	public int getScore()
+	{
+		return chosen.getScore();
+	}
+
+	public int getCompletedDepth()
+	{
+		return chosen.getCompletedDepth();
+	}
+
+	public int[] getPrincipalVariation()
+	{
+		return chosen.getPrincipalVariation();
+	}
+
+	/**
+	   Gets the counters of the last search summed over all threads
+	   @return the search statistics
+	 */
+	public SearchStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	   Measures how the search scales with threads: time to reach a fixed
+	   depth and nodes per second for 1 up to the given number of threads.
+	   Usage: java ParallelSearch [maxThreads] [depth]
+	   @param args  the largest thread count and the depth to search to
+	 */
+	public static void main(String[] args)
+	{
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors();
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+		Position root = Position.startPosition();
+
+		// Warm up the JIT so the single thread row is not penalised
+		ParallelSearch warmup = new ParallelSearch(new TranspositionTable(), 1);
+		warmup.setMaxDepth(depth - 1);
+		warmup.search(root);
+
+		System.out.println("threads  depth  time(ms)  nodes       nps         speedup");
+		long singleThreadTime = 0;
+		for (int threads = 1; threads <= maxThreads; threads++)
+		{
+			ParallelSearch search = new ParallelSearch(
+					new TranspositionTable(), threads);
+			search.setMaxDepth(depth);
+			long start = System.nanoTime();
+			search.search(root);
+			long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+			if (threads == 1)
+				singleThreadTime = millis;
+			long nodes = search.getStats().getNodes();
+			System.out.println(String.format("%-8d %-6d %-9d %-11d %-11d %.2f",
+					threads, search.getCompletedDepth(), millis, nodes,
+					nodes * 1000 / millis, (double) singleThreadTime / millis));
+		}
+	}
+}
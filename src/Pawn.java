@@ -1,8 +1,6 @@
 import java.awt.Point;
 import java.util.ArrayList;
 
-import javax.swing.ImageIcon;
-
 public class Pawn extends Piece
 {
 
@@ -15,23 +13,16 @@ public class Pawn extends Piece
 	public Pawn(int myRow, int myCol, int myColour)
 	{
 		super(myRow, myCol, myColour);
-		// Select the piece's image depending on its color
-		if (myColour == 1)
-			image = new ImageIcon("images\\whitePawn.png").getImage();
-		else
-			image = new ImageIcon("images\\blackPawn.png").getImage();
-
 	}
 
 	/**
-	   Finds all valid moves for this piece
+	   Finds all the moves of this piece, ignoring whether another piece must
+	   take
 	   @param board    the current board
-	   @param isForced check for forced moves
-	   @return legal move locations
+	   @return the move locations
 	 */
-	public ArrayList<Point> getMoveLocations(Piece[][] board, boolean isForced)
+	protected ArrayList<Point> findAllMoveLocations(Piece[][] board)
 	{
-		canTake = false;
 		// If there's no piece in front of the pawn, it can move 1 space up
 		int maxRow = Math.min(1, Math.min(7 - row, row));
 		ArrayList<Point> moveLocations = new ArrayList<Point>();
@@ -87,24 +78,6 @@ public class Pawn extends Piece
 			}
 		}
 
-		// If the piece may be forced to move, check for it
-		if (isForced)
-		{
-			// Check each valid location to see if it contains a piece
-			for (Point currLoc : moveLocations)
-			{
-				if (board[currLoc.y][currLoc.x] != null)
-				{
-					// Modify valid moves
-					this.canTake = true;
-					ensureForcedTake(board, moveLocations);
-					return moveLocations;
-				}
-			}
-			// Check if another piece must take
-			if (oneCanTake)
-				moveLocations.clear();
-		}
 		return moveLocations;
 	}
 
@@ -0,0 +1,188 @@
+import java.awt.Point;
+import java.util.ArrayList;
+
+/**
+   Counts the leaf nodes of the legal move tree to a fixed depth (perft).
+   Matching known counts shows the move generator is correct, and the speed
+   of the count measures its throughput. The same tree can also be counted
+   with Piece.getMoveLocations, the generator the board uses to show a
+   player's moves, so the two can be checked against each other.
+   Usage: java Perft [depth] [divide] [nobulk] [pieces]
+ */
+public class Perft
+{
+	private MoveGenerator moveGenerator;
+
+	// Count the moves of the last ply instead of making them
+	private boolean bulk;
+
+	/**
+	   Constructs a perft counter
+	   @param bulk  whether to count the moves at the last ply without making them
+	 */
+	public Perft(boolean bulk)
+	{
+		moveGenerator = new MoveGenerator(Position.MAX_PLY);
+		this.bulk = bulk;
+	}
+
+	/**
+	   Counts the leaf nodes below a position
+	   @param pos    the position, left unchanged
+	   @param depth  the depth to count to
+	   @return the number of leaf nodes
+	 */
+	public long perft(Position pos, int depth)
+	{
+		return perft(pos, depth, 0);
+	}
+
+	private long perft(Position pos, int depth, int ply)
+	{
+		if (depth == 0)
+			return 1;
+		int count = moveGenerator.generate(pos, ply);
+		if (depth == 1 && bulk)
+			return count;
+		int[] moves = moveGenerator.getMoves(ply);
+		long nodes = 0;
+		for (int i = 0; i < count; i++)
+		{
+			pos.makeMove(moves[i]);
+			nodes += perft(pos, depth - 1, ply + 1);
+			pos.unmakeMove();
+		}
+		return nodes;
+	}
+
+	/**
+	   Prints the leaf count below each root move, for finding the move a
+	   wrong count comes from
+	   @param pos    the position, left unchanged
+	   @param depth  the depth to count to
+	   @return the total number of leaf nodes
+	 */
+	public long divide(Position pos, int depth)
+	{
+		int count = moveGenerator.generate(pos, 0);
+		int[] moves = new int[count];
+		System.arraycopy(moveGenerator.getMoves(0), 0, moves, 0, count);
+		long total = 0;
+		for (int move : moves)
+		{
+			pos.makeMove(move);
+			long nodes = perft(pos, depth - 1, 1);
+			pos.unmakeMove();
+			System.out.println(PackedMove.toString(move) + ": " + nodes);
+			total += nodes;
+		}
+		System.out.println("moves: " + count + ", nodes: " + total);
+		return total;
+	}
+
+	/**
+	   Counts the leaf nodes below a position using Piece.getMoveLocations
+	   for the moves, the way the board finds the moves it offers a player
+	   @param pos    the position, left unchanged
+	   @param depth  the depth to count to
+	   @return the number of leaf nodes
+	 */
+	public static long perftPieces(Position pos, int depth)
+	{
+		if (depth == 0)
+			return 1;
+		int[] moves = pieceMoves(pos);
+		long nodes = 0;
+		for (int move : moves)
+		{
+			pos.makeMove(move);
+			nodes += perftPieces(pos, depth - 1);
+			pos.unmakeMove();
+		}
+		return nodes;
+	}
+
+	/**
+	   Finds the legal moves of a position with Piece.getMoveLocations
+	   @param pos  the position
+	   @return the packed moves
+	 */
+	static int[] pieceMoves(Position pos)
+	{
+		Piece[][] board = Piece.fromPosition(pos);
+		int side = pos.getSideToMove();
+		ArrayList<Piece> ownPieces = new ArrayList<Piece>();
+		for (Piece[] row : board)
+		{
+			for (Piece piece : row)
+			{
+				if (piece != null && piece.getColour() == side)
+					ownPieces.add(piece);
+			}
+		}
+
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int count = 0;
+		boolean mustTake = Piece.sideCanTake(board, side);
+		for (Piece piece : ownPieces)
+		{
+			Point from = piece.getLocation();
+			for (Point to : piece.getMoveLocations(board, mustTake))
+			{
+				boolean capture = board[to.y][to.x] != null;
+				int fromSq = from.y * 8 + from.x;
+				int toSq = to.y * 8 + to.x;
+				if (piece instanceof Pawn && (to.y == 0 || to.y == 7))
+				{
+					for (int type = Position.KNIGHT; type <= Position.KING; type++)
+						moves[count++] = PackedMove.encode(fromSq, toSq, type,
+								capture);
+				}
+				else
+					moves[count++] = PackedMove.encode(fromSq, toSq,
+							Position.NO_PIECE, capture);
+			}
+		}
+		int[] result = new int[count];
+		System.arraycopy(moves, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	   Prints the perft counts of the starting position for each depth with
+	   the speed of the count
+	   @param args  the depth, then any of divide, nobulk and pieces
+	 */
+	public static void main(String[] args)
+	{
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		boolean divide = false;
+		boolean bulk = true;
+		boolean pieces = false;
+		for (int i = 1; i < args.length; i++)
+		{
+			if (args[i].equals("divide"))
+				divide = true;
+			else if (args[i].equals("nobulk"))
+				bulk = false;
+			else if (args[i].equals("pieces"))
+				pieces = true;
+		}
+
+		Position pos = Position.startPosition();
+		Perft perft = new Perft(bulk);
+		if (divide)
+		{
+			perft.divide(pos, depth);
+			return;
+		}
+		for (int d = 1; d <= depth; d++)
+		{
+			long start = System.nanoTime();
+			long nodes = pieces ? perftPieces(pos, d) : perft.perft(pos, d);
+			long nanos = Math.max(1, System.nanoTime() - start);
+			System.out.println(String.format("depth %-3d nodes %-12d %8d ms %12.0f nodes/s",
+					d, nodes, nanos / 1000000, nodes * 1e9 / nanos));
+		}
+	}
+}
@@ -0,0 +1,77 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+   Perft regression suite: leaf counts of the legal move tree for known
+   positions, counted with the bitboard generator and with
+   Piece.getMoveLocations.
+ */
+public class PerftTest {
+
+	// Placement as in FEN from black's back rank down, side to move, counts from depth 1
+	private static final Object[][] POSITIONS = {
+		{ "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR", Position.WHITE,
+				new long[] { 20, 400, 8067, 153299, 2736526 } },
+		{ "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR", Position.BLACK,
+				new long[] { 20, 425, 7882, 133603, 2173605 } },
+		// Promotion to any of the five pieces, kings included
+		{ "8/1k4P1/8/8/8/8/1p4K1/8", Position.WHITE,
+				new long[] { 13, 169, 2114, 25791, 338797 } },
+		// A single forced capture on each side
+		{ "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR", Position.WHITE,
+				new long[] { 1, 1, 29, 93, 427 } },
+		{ "8/8/3k4/8/8/2R5/8/6B1", Position.BLACK,
+				new long[] { 8, 109, 777, 12654, 84693 } },
+		{ "r1b1k2r/p1pp1p1p/1pn2np1/4p3/2B1P3/2NP1N2/PPP2PPP/R1BQK2R", Position.WHITE,
+				new long[] { 2, 4, 14, 38, 222 } },
+	};
+
+	// Piece.getMoveLocations is slower, so it is checked to a smaller depth
+	private static final int PIECE_DEPTH = 3;
+
+	/**
+	   Sets up a position from a FEN piece placement. Pawns on their starting
+	   rank have not moved.
+	   @param placement the piece placement
+	   @param side the colour to move
+	   @return the position
+	 */
+	static Position parse(String placement, int side) {
+		return Fen.parse(placement + (side == Position.WHITE ? " w" : " b"));
+	}
+
+	@Test
+	public void bitboardGeneratorMatchesKnownCounts() {
+		for (boolean bulk : new boolean[] { true, false }) {
+			Perft perft = new Perft(bulk);
+			for (Object[] entry : POSITIONS) {
+				Position pos = parse((String) entry[0], (Integer) entry[1]);
+				long hash = pos.getHash();
+				long[] expected = (long[]) entry[2];
+				int depths = bulk ? expected.length : expected.length - 1;
+				for (int depth = 1; depth <= depths; depth++)
+					assertEquals(entry[0] + " depth " + depth, expected[depth - 1],
+							perft.perft(pos, depth));
+				assertEquals("position restored", hash, pos.getHash());
+			}
+		}
+	}
+
+	@Test
+	public void pieceMoveLocationsMatchKnownCounts() {
+		for (Object[] entry : POSITIONS) {
+			Position pos = parse((String) entry[0], (Integer) entry[1]);
+			long[] expected = (long[]) entry[2];
+			for (int depth = 1; depth <= PIECE_DEPTH; depth++)
+				assertEquals(entry[0] + " depth " + depth, expected[depth - 1],
+						Perft.perftPieces(pos, depth));
+		}
+	}
+
+	@Test
+	public void divideSumsToPerft() {
+		Position pos = parse((String) POSITIONS[0][0], Position.WHITE);
+		assertEquals(8067, new Perft(true).divide(pos, 3));
+	}
+}
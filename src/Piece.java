@@ -1,13 +1,9 @@
 
 import java.awt.Graphics;
-import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 
-import javax.swing.ImageIcon;
-import javax.swing.JOptionPane;
-
 public abstract class Piece extends Rectangle
 {
 	protected int row;
@@ -16,20 +12,8 @@ public abstract class Piece extends Rectangle
 
 	protected int colour;
 
-	protected Image image;
-
 	protected boolean hasMoved;
 
-	protected ArrayList<Point> allMoveLocations;
-
-	protected boolean canTake;
-
-	protected static boolean oneCanTake;
-
-	private ArrayList<Move> myMoves;
-	
-	protected boolean isAi;
-
 	/**
 	 Constructs the piece object
 	   @param myRow     the row the piece is on the board
@@ -42,10 +26,6 @@ public abstract class Piece extends Rectangle
 		col = myCol;
 		colour = myColour;
 		hasMoved = false;
-		canTake = false;
-		allMoveLocations = new ArrayList<Point>();
-		oneCanTake = false;
-		myMoves = new ArrayList<Move>();
 	}
 
 	public int getType() {
@@ -58,44 +38,74 @@ public abstract class Piece extends Rectangle
         return -1; // Error case
     }
 	
-	// Draws the graphical representation of the piece
-	
-	public void draw(Graphics g)
+	/**
+	   Draws the graphical representation of the piece
+	   @param g        the Graphics to draw in
+	   @param sprites  the images of the pieces
+	 */
+	public void draw(Graphics g, SpriteCache sprites)
 	{
-		g.drawImage(image, col * 71 + 25, row * 71 + 25, null);
+		g.drawImage(sprites.getSprite(getType(), colour), col * 71 + 25,
+				row * 71 + 25, null);
 	}
 
 	/**
 	 Finds all valid moves for this piece
-	   @param isForced  checks for forced moves         
+	   @param board     the current board
+	   @param mustTake  whether this piece's side must take, from sideCanTake
+	                    once for the whole board
 	   @return legal move locations
+	 */
+	public ArrayList<Point> getMoveLocations(Piece[][] board, boolean mustTake)
+	{
+		ArrayList<Point> moveLocations = findAllMoveLocations(board);
+		if (mustTake) // Empty if another piece has the captures
+			ensureForcedTake(board, moveLocations);
+		return moveLocations;
+	}
+
+	/**
+	 Finds all the moves of this piece, ignoring whether another piece must
+	 take
+	   @param board  the current board
+	   @return the move locations
 	   will be implemented for each piece
 	 */
-	public abstract ArrayList<Point> getMoveLocations(Piece[][] board,
-			boolean isForced);
+	protected abstract ArrayList<Point> findAllMoveLocations(Piece[][] board);
 
 	/**
-	   Moves the piece to the given location on the board
-	   @param loc      the new location for the piece
-	   @param board    the board the piece exists on            
+	  Checks if any piece of a colour can take, in which case that side must
+	  take. It only reads the board, so boards used by different threads do
+	  not affect each other.
+	  @param board   the current board
+	  @param colour  the side to check
+	  @return whether the side must take
 	 */
-	public void move(Point loc, Piece[][] board)
+	public static boolean sideCanTake(Piece[][] board, int colour)
 	{
-		int originalCol = col;
-		board[row][col] = null;
-		row = loc.y;
-		col = loc.x;
-		board[row][col] = this;
-		hasMoved = true;
+		for (int row = 0; row < 8; row++)
+		{
+			for (int col = 0; col < 8; col++)
+			{
+				Piece piece = board[row][col];
+				if (piece != null && piece.getColour() == colour
+						&& hasCapture(board, piece.findAllMoveLocations(board)))
+					return true;
+			}
+		}
+		return false;
+	}
 
-		// Check for promote
-		if (this instanceof Pawn)
-			if (colour == 0 && row == 7 || colour == 1 && row == 0) // Ensuring pawn reaches last rank
-	        {
-	            promote(board);
-	        }
-		oneCanTake = false;
-		myMoves.clear();
+	// Checks if any of the move locations holds a piece to take
+	private static boolean hasCapture(Piece[][] board,
+			ArrayList<Point> moveLocations)
+	{
+		for (Point currLoc : moveLocations)
+		{
+			if (board[currLoc.y][currLoc.x] != null)
+				return true;
+		}
+		return false;
 	}
 
 	/*
@@ -111,7 +121,6 @@ public abstract class Piece extends Rectangle
 				moveLocations.remove(currLoc);
 			}
 		}
-		oneCanTake = true;
 	}
 
 
@@ -126,33 +135,6 @@ public abstract class Piece extends Rectangle
 		return hasMoved;
 	}
 
-	/**
-	  Changes the value that stores if any piece on the board can take
-	  @param newValue the value to set the variable to
-	 */
-	public void changeCanTake(boolean newValue)
-	{
-		oneCanTake = newValue;
-	}
-
-	/**
-	  Checks if one of the pieces is forced to take
-	  @return whether or not a piece must take
-	 */
-	public boolean canOneTake()
-	{
-		return oneCanTake;
-	}
-
-	/**
-	 Checks if this current piece must take
-	 @return whether or not this piece must take
-	 */
-	public boolean forcedMove()
-	{
-		return canTake;
-	}
-
 	/**
 	  Gets the location the piece is at on the board
 	  @return the location of the piece
@@ -162,141 +144,66 @@ public abstract class Piece extends Rectangle
 		return new Point(col, row);
 	}
 
-	/**
-	   Calculates the best move for this piece based on the score of each move
-	   @param depthCount the number of times to look ahead for scoring
-	 */
-	public void lookAhead(Piece[][] board, int depthCount)
-	{
-		oneCanTake = false;
-        // Run through moves to check for force take
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (board[row][col] != null && board[row][col].getColour() == colour) {
-                    board[row][col].getMoveLocations(board, true);
-                }
-            }
-        }
-        ArrayList<Point> myDestinations = getMoveLocations(board, true);
-        myMoves.clear();
-        // Create and add all possible moves
-        for (int movesChecked = 0; movesChecked < myDestinations.size(); movesChecked++) {
-            myMoves.add(new Move(this, myDestinations.get(movesChecked),
-                    board[myDestinations.get(movesChecked).y][myDestinations.get(movesChecked).x]));
-        }
-	}
 
 	/**
-	   Returns the moves available to the piece
-	   @return the moves for the piece
+	   Creates a piece of the given type
+	   @param type      the piece type as returned by getType
+	   @param myRow     the row the piece is on the board
+	   @param myCol     the column the piece is on the board
+	   @param myColour  the color of the piece on the board
+	   @return the newly created piece
 	 */
-	public ArrayList<Move> getMoves()
+	public static Piece createPiece(int type, int myRow, int myCol, int myColour)
 	{
-		return myMoves;
+		switch (type)
+		{
+			case Position.PAWN:
+				return new Pawn(myRow, myCol, myColour);
+			case Position.KNIGHT:
+				return new Knight(myRow, myCol, myColour);
+			case Position.BISHOP:
+				return new Bishop(myRow, myCol, myColour);
+			case Position.ROOK:
+				return new Rook(myRow, myCol, myColour);
+			case Position.QUEEN:
+				return new Queen(myRow, myCol, myColour);
+			case Position.KING:
+				return new King(myRow, myCol, myColour);
+			default:
+				return null;
+		}
 	}
 
 	/**
-	   Cloning piece
-	   @return the newly created piece
+	   Converts a bitboard position into a board of pieces
+	   @param pos  the position to convert
+	   @return the equivalent board
 	 */
-	public Piece clonePiece()
+	public static Piece[][] fromPosition(Position pos)
 	{
-		Piece tempPiece;
-		if (this instanceof Pawn)
-			tempPiece = new Pawn(row, col, colour);
-		else if (this instanceof Rook)
-			tempPiece = new Rook(row, col, colour);
-		else if (this instanceof Knight)
-			tempPiece = new Knight(row, col, colour);
-		else if (this instanceof Bishop)
-			tempPiece = new Bishop(row, col, colour);
-		else if (this instanceof Queen)
-			tempPiece = new Queen(row, col, colour);
-		else if (this instanceof King)
-			tempPiece = new King(row, col, colour);
-		else
-			return null;
-		tempPiece.changeCanTake(oneCanTake);
-		return tempPiece;
+		Piece[][] board = new Piece[8][8];
+		fromPosition(pos, board);
+		return board;
 	}
 
-
 	/**
-	   Promotes the pawn to the selected piece for Human, and find the best piece to promote for AI
+	   Sets up an existing board of pieces to match a bitboard position
+	   @param pos    the position to copy
+	   @param board  the board to overwrite
 	 */
-	public void promote(Piece[][] board)
+	public static void fromPosition(Position pos, Piece[][] board)
 	{
-		if (isAi) {
-            Piece bestPiece = AIbestPromotion(board);
-            board[row][col] = bestPiece;
-        } else {
-            String[] options = {"Queen", "Rook", "Bishop", "Knight", "King"};
-            int response = JOptionPane.showOptionDialog(null, "Choose piece for promotion", "Pawn Promotion",
-                JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
-
-            Piece newPiece;
-            switch (response) {
-                case 1:
-                    newPiece = new Rook(row, col, colour);
-                    break;
-                case 2:
-                    newPiece = new Bishop(row, col, colour);
-                    break;
-                case 3:
-                    newPiece = new Knight(row, col, colour);
-                    break;
-                case 4:
-                    newPiece = new King(row, col, colour);
-                    break;
-                case 5:
-                    newPiece = new Queen(row, col, colour);
-                    break;
-                default:
-                    newPiece = new Queen(row, col, colour); // Default to Queen if something goes wrong
-                    break;
-            }
-            board[row][col] = newPiece;
-        }
+		for (int sq = 0; sq < 64; sq++)
+		{
+			int code = pos.getPiece(sq);
+			Piece piece = null;
+			if (code != Position.NO_PIECE)
+			{
+				piece = createPiece(Position.typeOf(code), sq >> 3, sq & 7,
+						Position.colourOf(code));
+				piece.hasMoved = pos.hasMoved(sq);
+			}
+			board[sq >> 3][sq & 7] = piece;
+		}
 	}
-	
-	private Piece AIbestPromotion(Piece[][] board) {
-        Piece[] possiblePromotions = {
-            new Queen(row, col, colour),
-            new Rook(row, col, colour),
-            new Bishop(row, col, colour),
-            new Knight(row, col, colour),
-            new King(row, col, colour),
-        };
-
-        Piece bestPiece = possiblePromotions[0];
-        int bestScore = Integer.MIN_VALUE;
-
-        for (Piece piece : possiblePromotions) {
-            board[row][col] = piece;
-            int score = evaluateBoard(board); // Implement this method to evaluate the board
-            if (score > bestScore) {
-                bestScore = score;
-                bestPiece = piece;
-            }
-        }
-
-        return bestPiece;
-    }
-	
-	 private int evaluateBoard(Piece[][] board) {
-		// Use Move class's score calculation method
-	        int score = 0;
-	        for (int row = 0; row < 8; row++) {
-	            for (int col = 0; col < 8; col++) {
-	                if (board[row][col] != null) {
-	                    ArrayList<Move> moves = board[row][col].getMoves();
-	                    for (Move move : moves) {
-	                        score += move.getScore();
-	                    }
-	                }
-	            }
-	        }
-	        return score;
-	    }
-
-}
\ No newline at end of file
+}
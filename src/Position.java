@@ -0,0 +1,462 @@
+import java.util.Arrays;
+
+/**
+   Bitboard representation of an antichess position used as the search state.
+   Square index is row * 8 + col, with row 0 being black's back rank, which
+   matches the Piece[][] layout used by Board.
+ */
+public class Position
+{
+	// Colours, matching Piece.getColour()
+	public static final int WHITE = 1;
+	public static final int BLACK = 2;
+
+	// Piece types, matching Piece.getType()
+	public static final int PAWN = 0;
+	public static final int KNIGHT = 1;
+	public static final int BISHOP = 2;
+	public static final int ROOK = 3;
+	public static final int QUEEN = 4;
+	public static final int KING = 5;
+
+	public static final int NO_PIECE = -1;
+
+	// Deepest line a search makes moves for; the undo information starts
+	// this deep and grows for longer games
+	public static final int MAX_PLY = 256;
+
+	// One bitboard per piece code (type + 6 for black)
+	private long[] pieces;
+
+	// Occupancy indexed by colour, index 0 holds both colours
+	private long[] occupied;
+
+	// Piece code on every square, NO_PIECE if empty
+	private int[] squares;
+
+	// Weights the evaluation sums below are kept for
+	private EvalParams evalParams;
+
+	// Packed material and piece-square sums of the evaluation, by colour
+	private int[] material;
+	private int[] pieceSquare;
+
+	// Pawns that have not moved yet and may still step two squares
+	private long unmovedPawns;
+
+	private int sideToMove;
+
+	// Zobrist hash, updated in makeMove and restored in unmakeMove
+	private long hash;
+
+	// Plies since the last pawn move or capture, for the fifty-move rule
+	private int halfmoveClock;
+
+	// Starts at 1 and goes up after every black move
+	private int fullmoveNumber;
+
+	// Undo information for every move made. The hashes before each move
+	// double as the history repetitions are looked for in.
+	private int ply;
+	private int[] undoMove;
+	private int[] undoCaptured;
+	private long[] undoUnmovedPawns;
+	private long[] undoHash;
+	private int[] undoHalfmoveClock;
+
+	/**
+	   Constructs an empty position with white to move
+	 */
+	public Position()
+	{
+		pieces = new long[12];
+		occupied = new long[3];
+		squares = new int[64];
+		material = new int[3];
+		pieceSquare = new int[3];
+		evalParams = Evaluation.getParams();
+		for (int sq = 0; sq < 64; sq++)
+			squares[sq] = NO_PIECE;
+		sideToMove = WHITE;
+		fullmoveNumber = 1;
+		undoMove = new int[MAX_PLY];
+		undoCaptured = new int[MAX_PLY];
+		undoUnmovedPawns = new long[MAX_PLY];
+		undoHash = new long[MAX_PLY];
+		undoHalfmoveClock = new int[MAX_PLY];
+	}
+
+	/**
+	   Constructs an independent copy of another position, including the
+	   moves made on it, which can be taken back on the copy too
+	   @param other  the position to copy
+	 */
+	public Position(Position other)
+	{
+		this();
+		System.arraycopy(other.pieces, 0, pieces, 0, 12);
+		System.arraycopy(other.occupied, 0, occupied, 0, 3);
+		System.arraycopy(other.squares, 0, squares, 0, 64);
+		evalParams = other.evalParams;
+		System.arraycopy(other.material, 0, material, 0, 3);
+		System.arraycopy(other.pieceSquare, 0, pieceSquare, 0, 3);
+		unmovedPawns = other.unmovedPawns;
+		sideToMove = other.sideToMove;
+		hash = other.hash;
+		halfmoveClock = other.halfmoveClock;
+		fullmoveNumber = other.fullmoveNumber;
+		ply = other.ply;
+		while (undoMove.length < ply)
+			growUndo();
+		System.arraycopy(other.undoMove, 0, undoMove, 0, ply);
+		System.arraycopy(other.undoCaptured, 0, undoCaptured, 0, ply);
+		System.arraycopy(other.undoUnmovedPawns, 0, undoUnmovedPawns, 0, ply);
+		System.arraycopy(other.undoHash, 0, undoHash, 0, ply);
+		System.arraycopy(other.undoHalfmoveClock, 0, undoHalfmoveClock, 0, ply);
+	}
+
+	/**
+	   Removes every piece, leaving an empty position with white to move, so
+	   one position can be set up many times without allocating
+	 */
+	public void clear()
+	{
+		Arrays.fill(pieces, 0L);
+		Arrays.fill(occupied, 0L);
+		Arrays.fill(squares, NO_PIECE);
+		Arrays.fill(material, 0);
+		Arrays.fill(pieceSquare, 0);
+		unmovedPawns = 0L;
+		sideToMove = WHITE;
+		hash = 0L;
+		halfmoveClock = 0;
+		fullmoveNumber = 1;
+		ply = 0;
+	}
+
+	/**
+	   Creates the starting position, the same one Board.newGame sets up
+	   @return the starting position with white to move
+	 */
+	public static Position startPosition()
+	{
+		Position pos = new Position();
+		int[] backRank = { ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT,
+				ROOK };
+		for (int col = 0; col < 8; col++)
+		{
+			pos.addPiece(col, backRank[col], BLACK, false);
+			pos.addPiece(8 + col, PAWN, BLACK, false);
+			pos.addPiece(48 + col, PAWN, WHITE, false);
+			pos.addPiece(56 + col, backRank[col], WHITE, false);
+		}
+		return pos;
+	}
+
+	/**
+	   Gets the piece code for a type and colour
+	   @param type    the piece type
+	   @param colour  the piece colour
+	   @return an index between 0 and 11
+	 */
+	public static int pieceCode(int type, int colour)
+	{
+		return type + (colour == WHITE ? 0 : 6);
+	}
+
+	public static int typeOf(int code)
+	{
+		return code % 6;
+	}
+
+	public static int colourOf(int code)
+	{
+		return code < 6 ? WHITE : BLACK;
+	}
+
+	public static int opponent(int colour)
+	{
+		return colour == WHITE ? BLACK : WHITE;
+	}
+
+	/**
+	   Places a piece on an empty square
+	   @param sq      the square
+	   @param type    the piece type
+	   @param colour  the piece colour
+	   @param hasMoved  whether a pawn has used its first move
+	 */
+	public void addPiece(int sq, int type, int colour, boolean hasMoved)
+	{
+		int code = pieceCode(type, colour);
+		putPiece(sq, code);
+		hash ^= Zobrist.PIECE_SQUARE[code][sq];
+		if (type == PAWN && !hasMoved)
+		{
+			unmovedPawns |= 1L << sq;
+			hash ^= Zobrist.UNMOVED_PAWN[sq];
+		}
+	}
+
+	public int getPiece(int sq)
+	{
+		return squares[sq];
+	}
+
+	public long getPieces(int type, int colour)
+	{
+		return pieces[pieceCode(type, colour)];
+	}
+
+	public long getOccupied(int colour)
+	{
+		return occupied[colour];
+	}
+
+	public long getOccupied()
+	{
+		return occupied[0];
+	}
+
+	public boolean hasMoved(int sq)
+	{
+		return (unmovedPawns & (1L << sq)) == 0;
+	}
+
+	public int getSideToMove()
+	{
+		return sideToMove;
+	}
+
+	public void setSideToMove(int colour)
+	{
+		if (colour != sideToMove)
+			hash ^= Zobrist.BLACK_TO_MOVE;
+		sideToMove = colour;
+	}
+
+	public long getHash()
+	{
+		return hash;
+	}
+
+	public int getHalfmoveClock()
+	{
+		return halfmoveClock;
+	}
+
+	public void setHalfmoveClock(int plies)
+	{
+		halfmoveClock = plies;
+	}
+
+	/**
+	   Gets how many moves have been made that can be taken back
+	   @return the number of moves made
+	 */
+	public int getPly()
+	{
+		return ply;
+	}
+
+	/**
+	   Finds the last time this position occurred among the moves made.
+	   Only the positions since the last pawn move or capture are looked at,
+	   as no position before one can occur again, and only every other one,
+	   those with the same side to move. Called again with the ply found it
+	   finds the occurrence before that, so counting occurrences costs no
+	   more than one scan.
+	   @param before  the ply to look back from, getPly() or a ply returned
+	                  earlier
+	   @return the ply the position occurred at, or -1 if it did not occur
+	 */
+	public int findRepetition(int before)
+	{
+		int oldest = Math.max(0, ply - halfmoveClock);
+		for (int i = before - 4; i >= oldest; i -= 2) // A position cannot recur after 2 plies
+		{
+			if (undoHash[i] == hash)
+				return i;
+		}
+		return -1;
+	}
+
+	public int getFullmoveNumber()
+	{
+		return fullmoveNumber;
+	}
+
+	public void setFullmoveNumber(int number)
+	{
+		fullmoveNumber = number;
+	}
+
+	public int getPieceCount(int colour)
+	{
+		return Long.bitCount(occupied[colour]);
+	}
+
+	public EvalParams getEvalParams()
+	{
+		return evalParams;
+	}
+
+	/**
+	   Changes the weights the evaluation sums are kept for, adding the sums
+	   up again from the pieces on the board
+	   @param params  the weights to use
+	 */
+	public void setEvalParams(EvalParams params)
+	{
+		if (params == evalParams)
+			return;
+		evalParams = params;
+		material[WHITE] = material[BLACK] = 0;
+		pieceSquare[WHITE] = pieceSquare[BLACK] = 0;
+		for (int sq = 0; sq < 64; sq++)
+		{
+			int code = squares[sq];
+			if (code != NO_PIECE)
+			{
+				material[colourOf(code)] += params.material[code];
+				pieceSquare[colourOf(code)] += params.pieceSquare[code * 64 + sq];
+			}
+		}
+	}
+
+	/**
+	   Gets the material term of the evaluation for a side, see Evaluation
+	   @param colour  the side
+	   @return the packed value of the side's pieces
+	 */
+	public int getMaterial(int colour)
+	{
+		return material[colour];
+	}
+
+	/**
+	   Gets the piece-square term of the evaluation for a side
+	   @param colour  the side
+	   @return the packed value of the squares the side's pieces stand on
+	 */
+	public int getPieceSquare(int colour)
+	{
+		return pieceSquare[colour];
+	}
+
+	private void putPiece(int sq, int code)
+	{
+		long bit = 1L << sq;
+		int colour = colourOf(code);
+		pieces[code] |= bit;
+		occupied[colour] |= bit;
+		occupied[0] |= bit;
+		squares[sq] = code;
+		material[colour] += evalParams.material[code];
+		pieceSquare[colour] += evalParams.pieceSquare[code * 64 + sq];
+	}
+
+	private void removePiece(int sq, int code)
+	{
+		long bit = ~(1L << sq);
+		int colour = colourOf(code);
+		pieces[code] &= bit;
+		occupied[colour] &= bit;
+		occupied[0] &= bit;
+		squares[sq] = NO_PIECE;
+		material[colour] -= evalParams.material[code];
+		pieceSquare[colour] -= evalParams.pieceSquare[code * 64 + sq];
+	}
+
+	/**
+	   Makes a move on the position, remembering what is needed to undo it
+	   @param move  the packed move (see PackedMove)
+	 */
+	public void makeMove(int move)
+	{
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		int promotion = PackedMove.promotion(move);
+		int mover = squares[from];
+		int captured = squares[to];
+
+		if (ply == undoMove.length)
+			growUndo();
+		undoMove[ply] = move;
+		undoCaptured[ply] = captured;
+		undoUnmovedPawns[ply] = unmovedPawns;
+		undoHash[ply] = hash;
+		undoHalfmoveClock[ply] = halfmoveClock;
+		ply++;
+
+		if (captured != NO_PIECE || typeOf(mover) == PAWN)
+			halfmoveClock = 0;
+		else
+			halfmoveClock++;
+		if (sideToMove == BLACK)
+			fullmoveNumber++;
+
+		long[][] keys = Zobrist.PIECE_SQUARE;
+		if (captured != NO_PIECE)
+		{
+			removePiece(to, captured);
+			hash ^= keys[captured][to];
+		}
+		removePiece(from, mover);
+		hash ^= keys[mover][from];
+		int placed = promotion != NO_PIECE ? pieceCode(promotion, sideToMove)
+				: mover;
+		putPiece(to, placed);
+		hash ^= keys[placed][to];
+
+		// A moving pawn loses its double step, and so does a captured one
+		long cleared = unmovedPawns & (1L << from | 1L << to);
+		unmovedPawns ^= cleared;
+		while (cleared != 0)
+		{
+			hash ^= Zobrist.UNMOVED_PAWN[Long.numberOfTrailingZeros(cleared)];
+			cleared &= cleared - 1;
+		}
+
+		sideToMove = opponent(sideToMove);
+		hash ^= Zobrist.BLACK_TO_MOVE;
+	}
+
+	// Doubles the number of moves that can be taken back
+	private void growUndo()
+	{
+		int length = undoMove.length * 2;
+		undoMove = Arrays.copyOf(undoMove, length);
+		undoCaptured = Arrays.copyOf(undoCaptured, length);
+		undoUnmovedPawns = Arrays.copyOf(undoUnmovedPawns, length);
+		undoHash = Arrays.copyOf(undoHash, length);
+		undoHalfmoveClock = Arrays.copyOf(undoHalfmoveClock, length);
+	}
+
+	/**
+	   Takes back the last move made
+	 */
+	public void unmakeMove()
+	{
+		ply--;
+		int move = undoMove[ply];
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		int captured = undoCaptured[ply];
+		sideToMove = opponent(sideToMove);
+
+		int moved = squares[to];
+		removePiece(to, moved);
+		if (PackedMove.promotion(move) != NO_PIECE)
+			putPiece(from, pieceCode(PAWN, sideToMove));
+		else
+			putPiece(from, moved);
+		if (captured != NO_PIECE)
+			putPiece(to, captured);
+		unmovedPawns = undoUnmovedPawns[ply];
+		hash = undoHash[ply];
+		halfmoveClock = undoHalfmoveClock[ply];
+		if (sideToMove == BLACK)
+			fullmoveNumber--;
+	}
+}
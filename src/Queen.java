@@ -3,8 +3,6 @@
 import java.awt.Point;
 import java.util.ArrayList;
 
-import javax.swing.ImageIcon;
-
 public class Queen extends Piece
 {
 
@@ -18,20 +16,15 @@ public class Queen extends Piece
 	{
 		// Call super (Piece)
 		super(myRow, myCol, myColour);
-		// Select the piece's image depending on its colour
-		if (myColour == 1)
-			image = new ImageIcon("images\\whiteQueen.png").getImage();
-		else
-			image = new ImageIcon("images\\blackQueen.png").getImage();
 	}
 
 	/**
-	   Finds all valid moves for this piece.
+	   Finds all the moves of this piece, ignoring whether another piece must
+	   take
 	   @param board    the current board
-	   @param isForced check for forced moves
-	   @return legal move locations
+	   @return the move locations
 	 */
-	public ArrayList<Point> getMoveLocations(Piece[][] board, boolean isForced)
+	protected ArrayList<Point> findAllMoveLocations(Piece[][] board)
 	{
 
 		ArrayList<Point> moveLocations = new ArrayList<Point>();
@@ -46,24 +39,6 @@ public class Queen extends Piece
 		moveLocations.addAll(findMoveLocations(board, 1, -1));  // D Left-down
 		moveLocations.addAll(findMoveLocations(board, 1, 1));   // D Right-down
 
-		// If the piece may be forced to move, check for it
-		if (isForced)
-		{
-			// Check each valid location to see if it contains a piece
-			for (Point currLoc : moveLocations)
-			{
-				if (board[currLoc.y][currLoc.x] != null)
-				{
-					// Modify valid moves
-					this.canTake = true;
-					ensureForcedTake(board, moveLocations);
-					return moveLocations;
-				}
-			}
-			// Check if another piece must take
-			if (oneCanTake)
-				moveLocations.clear();
-		}
 		return moveLocations;
 	}
 
@@ -77,7 +52,6 @@ public class Queen extends Piece
 	public ArrayList<Point> findMoveLocations(Piece[][] board, int addToRow,
 			int addToCol)
 	{
-		canTake = false;
 		// Handles out of bounds
 		int stopRow = 0;
 		if (addToRow < 0)
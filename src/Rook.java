@@ -1,8 +1,6 @@
 import java.awt.Point;
 import java.util.ArrayList;
 
-import javax.swing.ImageIcon;
-
 public class Rook extends Piece
 {
 
@@ -17,23 +15,17 @@ public class Rook extends Piece
 	{
 		// Call super Piece class
 		super(myRow, myCol, myColour);
-		// Select the piece image depending on its color
-		if (myColour == 1)
-			image = new ImageIcon("images\\whiteRook.png").getImage();
-		else
-			image = new ImageIcon("images\\blackRook.png").getImage();
 	}
 
 	/**
-	   Finds all valid moves for this piece 
+	   Finds all the moves of this piece, ignoring whether another piece must
+	   take
 		   @param board     the current board
-		   @param isForced  check for forced moves    
-		   @return 		    legal move locations
+		   @return 		    the move locations
 	 */
-	public ArrayList<Point> getMoveLocations(Piece[][] board, boolean isForced)
+	protected ArrayList<Point> findAllMoveLocations(Piece[][] board)
 	{
 
-		canTake = false;
 		ArrayList<Point> moveLocations = new ArrayList<Point>();
 		// Add moves in four directions - Up Down Right Left
 		moveLocations.addAll(findMoveLocations(board, -1, 0));  
@@ -41,24 +33,6 @@ public class Rook extends Piece
 		moveLocations.addAll(findMoveLocations(board, 0, 1));  
 		moveLocations.addAll(findMoveLocations(board, 0, -1)); 
 
-		// Check for forced moves
-		if (isForced)
-		{
-			// Check each valid location to see if it contains a piece
-			for (Point currLoc : moveLocations)
-			{
-				if (board[currLoc.y][currLoc.x] != null)
-				{
-					// Modify valid moves
-					this.canTake = true;
-					ensureForcedTake(board, moveLocations);
-					return moveLocations;
-				}
-			}
-			// Check if another piece must take
-			if (oneCanTake)
-				moveLocations.clear();
-		}
 		return moveLocations;
 	}
 
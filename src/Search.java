@@ -0,0 +1,614 @@
+/**
+   Iterative deepening alpha-beta search over a Position. Each iteration
+   searches one ply deeper than the last, trying the principal variation and
+   the transposition table move of the previous iteration first. The search
+   stops when the depth, time or node budget runs out and returns the best
+   move of the last completed iteration. Past the nominal depth a
+   quiescence search plays out any captures that are forced, so positions
+   are only evaluated once nobody has to take. Positions with few enough
+   pieces are looked up in the endgame tablebase instead of searched.
+   Repeated positions and positions past the fifty-move rule are draws.
+   Scores are from the point of view of the side to move.
+ */
+public class Search
+{
+	public static final int INFINITY = 999999;
+
+	// Score for a won position, minus the plies needed to get there
+	public static final int WIN = 100000;
+
+	// Scores beyond this are wins found at a known distance, the plies
+	// searched plus the distance a tablebase gives from where it was probed
+	private static final int WIN_BOUND = WIN - Position.MAX_PLY
+			- Tablebase.MAX_DISTANCE;
+
+	// Most captures played out past the nominal depth. Trades in antichess
+	// can run on for a long time, so unbounded capture trees explode.
+	// Table entries of the main search have their depth raised by this, so
+	// that they rank above the quiescence entries, stored at the captures
+	// they had left.
+	private static final int QUIESCENCE_DEPTH = 8;
+
+	// Returned by probeTablebase for a position not in the tablebase
+	private static final int NO_SCORE = INFINITY + 1;
+
+	// How many nodes to search between checks of the clock
+	private static final int CHECK_INTERVAL = 1024;
+
+	private Position pos;
+
+	// Moves made on the position before the root, which belong to the game
+	private int rootPly;
+
+	private TranspositionTable transpositionTable;
+
+	private Tablebase tablebase;
+
+	private MoveGenerator moveGenerator;
+
+	private MoveOrderer moveOrderer;
+
+	// Ordering scores for the moves of each ply
+	private int[][] moveScores;
+
+	private SearchStats stats;
+
+	// Triangular table holding the principal variation found at each ply
+	private int[][] pvTable;
+
+	private int[] pvLength;
+
+	// Principal variation of the last completed iteration, used for ordering
+	private int[] previousPv;
+
+	private int previousPvLength;
+
+	private int maxDepth;
+
+	private long timeLimit;
+
+	private long nodeLimit;
+
+	private long startTime;
+
+	private volatile boolean stopped;
+
+	private int bestScore;
+
+	private int completedDepth;
+
+	// Position of this search among threads sharing a table, 0 for the main one
+	private int threadIndex;
+
+	// Evaluation weights, null to use Evaluation.getParams()
+	private EvalParams evalParams;
+
+	/**
+	   Constructs a search using the given transposition table
+	   @param table  the table to store searched positions in
+	 */
+	public Search(TranspositionTable table)
+	{
+		this(table, 0);
+	}
+
+	/**
+	   Constructs one of several searches sharing a transposition table
+	   @param table        the table shared by all threads
+	   @param threadIndex  0 for the main search, helpers count up from 1
+	 */
+	public Search(TranspositionTable table, int threadIndex)
+	{
+		this.threadIndex = threadIndex;
+		transpositionTable = table;
+		tablebase = Tablebase.getDefault();
+		moveGenerator = new MoveGenerator(Position.MAX_PLY);
+		moveOrderer = new MoveOrderer(Position.MAX_PLY);
+		moveScores = new int[Position.MAX_PLY][MoveGenerator.MAX_MOVES];
+		stats = new SearchStats();
+		pvTable = new int[Position.MAX_PLY][Position.MAX_PLY];
+		pvLength = new int[Position.MAX_PLY];
+		previousPv = new int[Position.MAX_PLY];
+		maxDepth = Position.MAX_PLY - 1 - QUIESCENCE_DEPTH;
+	}
+
+	/**
+	   Sets the deepest iteration to search
+	   @param depth  the maximum depth in plies
+	 */
+	public void setMaxDepth(int depth)
+	{
+		maxDepth = Math.max(1, Math.min(depth,
+				Position.MAX_PLY - 1 - QUIESCENCE_DEPTH));
+	}
+
+	/**
+	   Sets how long a search may take
+	   @param millis  the time budget in milliseconds, 0 for no limit
+	 */
+	public void setTimeLimit(long millis)
+	{
+		timeLimit = millis;
+	}
+
+	/**
+	   Sets how many nodes a search may visit
+	   @param limit  the node budget, 0 for no limit
+	 */
+	public void setNodeLimit(long limit)
+	{
+		nodeLimit = limit;
+	}
+
+	/**
+	   Sets the evaluation weights of this search, for example to play two
+	   sets of weights against each other
+	   @param params  the weights, or null to use the ones Evaluation holds
+	                  when each search starts
+	 */
+	public void setEvalParams(EvalParams params)
+	{
+		evalParams = params;
+	}
+
+	/**
+	   Sets the endgame tablebase the search probes
+	   @param tablebase  the tablebase, Tablebase.getDefault() unless set
+	 */
+	public void setTablebase(Tablebase tablebase)
+	{
+		this.tablebase = tablebase;
+	}
+
+	/**
+	   Asks a running search to stop as soon as possible
+	 */
+	public void stop()
+	{
+		stopped = true;
+	}
+
+	/**
+	   Searches a position for the best move
+	   @param root  the position to search, left unchanged
+	   @return the best move found, or PackedMove.NONE if there are no moves
+	 */
+	public int search(Position root)
+	{
+		stopped = false;
+		transpositionTable.newSearch();
+		return iterate(root);
+	}
+
+	/**
+	   Clears the stop request before the search is started on another thread
+	 */
+	void prepare()
+	{
+		stopped = false;
+	}
+
+	/**
+	   Runs the iterations of a search without ageing the transposition table,
+	   which is done once by whoever starts the threads sharing it
+	   @param root  the position to search, left unchanged
+	   @return the best move found, or PackedMove.NONE if there are no moves
+	 */
+	int iterate(Position root)
+	{
+		pos = new Position(root);
+		pos.setEvalParams(evalParams != null ? evalParams : Evaluation.getParams());
+		rootPly = pos.getPly();
+		stats.clear();
+		startTime = System.currentTimeMillis();
+		previousPvLength = 0;
+		completedDepth = 0;
+		bestScore = 0;
+		moveOrderer.newSearch();
+
+		int moveCount = moveGenerator.generate(pos, 0);
+		if (moveCount == 0)
+			return PackedMove.NONE;
+
+		// Order the root moves once, later iterations keep the best move in front
+		int[] moves = moveGenerator.getMoves(0);
+		moveOrderer.scoreMoves(pos, moves, moveScores[0], moveCount,
+				PackedMove.NONE, TranspositionEntry.bestMove(transpositionTable
+						.probe(pos.getHash())), 0);
+		int[] rootMoves = new int[moveCount];
+		for (int i = 0; i < moveCount; i++)
+			rootMoves[i] = moveOrderer.pickNext(moves, moveScores[0], moveCount, i);
+		int bestMove = rootMoves[0];
+
+		// Odd helper threads start a ply deeper so threads spread over depths
+		for (int depth = 1 + (threadIndex & 1); depth <= maxDepth; depth++)
+		{
+			int score = searchRoot(rootMoves, depth);
+			if (stopped)
+				break;
+			bestMove = pvTable[0][0];
+			bestScore = score;
+			completedDepth = depth;
+			previousPvLength = pvLength[0];
+			System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+
+			// Only one move, or a forced win found, so deeper searches will not change it
+			if (moveCount == 1 || Math.abs(score) > WIN_BOUND)
+				break;
+		}
+		return bestMove;
+	}
+
+	/**
+	   Searches every root move to the given depth
+	   @param rootMoves  the root moves, best move of the last iteration first
+	   @param depth      the depth to search
+	   @return the score of the best move
+	 */
+	private int searchRoot(int[] rootMoves, int depth)
+	{
+		int alpha = -INFINITY;
+		int bestIndex = 0;
+		pvLength[0] = 0;
+		for (int i = 0; i < rootMoves.length; i++)
+		{
+			pos.makeMove(rootMoves[i]);
+			int score = -alphabeta(depth - 1, 1, -INFINITY, -alpha,
+					i == 0 && previousPvLength > 0);
+			pos.unmakeMove();
+			if (stopped)
+				return alpha;
+			if (score > alpha)
+			{
+				alpha = score;
+				bestIndex = i;
+				updatePv(0, rootMoves[i]);
+			}
+		}
+
+		// Keep the best move in front for the next iteration
+		int best = rootMoves[bestIndex];
+		System.arraycopy(rootMoves, 0, rootMoves, 1, bestIndex);
+		rootMoves[0] = best;
+		transpositionTable.store(pos.getHash(), alpha,
+				depth + QUIESCENCE_DEPTH, best, TranspositionEntry.EXACT);
+		return alpha;
+	}
+
+	/**
+	   Negamax alpha-beta search with transposition table lookup
+	   @param depth      the remaining depth of the search
+	   @param ply        the distance from the root
+	   @param alpha      the alpha value
+	   @param beta       the beta value
+	   @param followPv   whether every move so far was on the last principal variation
+	   @return the score of the position for the side to move
+	 */
+	private int alphabeta(int depth, int ply, int alpha, int beta,
+			boolean followPv)
+	{
+		pvLength[ply] = ply;
+		if (isDraw(ply))
+		{
+			stats.draws++;
+			return 0;
+		}
+		if (depth <= 0)
+			return quiesce(QUIESCENCE_DEPTH, ply, alpha, beta);
+
+		if (++stats.nodes % CHECK_INTERVAL == 0 && outOfBudget())
+			stopped = true;
+		if (stopped)
+			return 0;
+
+		long hash = pos.getHash();
+		int ttMove = PackedMove.NONE;
+		long entry = transpositionTable.probe(hash);
+		if (entry != 0)
+		{
+			ttMove = TranspositionEntry.bestMove(entry);
+			if (TranspositionEntry.depth(entry) >= depth + QUIESCENCE_DEPTH)
+			{
+				int entryScore = scoreFromTable(TranspositionEntry.score(entry), ply);
+				int flag = TranspositionEntry.flag(entry);
+				if (flag == TranspositionEntry.EXACT
+						|| flag == TranspositionEntry.LOWERBOUND && entryScore >= beta
+						|| flag == TranspositionEntry.UPPERBOUND && entryScore <= alpha)
+				{
+					stats.ttHits++;
+					return entryScore;
+				}
+			}
+		}
+
+		int tablebaseScore = probeTablebase(ply);
+		if (tablebaseScore != NO_SCORE)
+			return tablebaseScore;
+
+		if (ply >= Position.MAX_PLY - 1)
+			return evaluate(pos, ply);
+
+		int moveCount = moveGenerator.generate(pos, ply);
+		int[] moves = moveGenerator.getMoves(ply);
+		if (moveCount == 0) // No pieces or no moves left, which wins in antichess
+			return WIN - ply;
+
+		// Try the principal variation move, then the table move, first
+		int pvMove = followPv && ply < previousPvLength ? previousPv[ply]
+				: PackedMove.NONE;
+		int[] scores = moveScores[ply];
+		moveOrderer.scoreMoves(pos, moves, scores, moveCount, pvMove, ttMove,
+				ply);
+
+		int originalAlpha = alpha;
+		int bestScore = -INFINITY;
+		int bestMove = PackedMove.NONE;
+		for (int i = 0; i < moveCount; i++)
+		{
+			int move = moveOrderer.pickNext(moves, scores, moveCount, i);
+			pos.makeMove(move);
+			int score = -alphabeta(depth - 1, ply + 1, -beta, -alpha,
+					move == pvMove);
+			pos.unmakeMove();
+			if (stopped)
+				return 0;
+
+			if (score > bestScore)
+			{
+				bestScore = score;
+				bestMove = move;
+				if (score > alpha)
+				{
+					alpha = score;
+					updatePv(ply, move);
+					if (alpha >= beta)
+					{
+						stats.betaCutoffs++;
+						if (i == 0)
+							stats.firstMoveCutoffs++;
+						moveOrderer.recordCutoff(
+								pos.getPiece(PackedMove.from(move)), move,
+								depth, ply);
+						break;
+					}
+				}
+			}
+		}
+
+		int flag;
+		if (bestScore <= originalAlpha)
+			flag = TranspositionEntry.UPPERBOUND;
+		else if (bestScore >= beta)
+			flag = TranspositionEntry.LOWERBOUND;
+		else
+			flag = TranspositionEntry.EXACT;
+		transpositionTable.store(hash, scoreToTable(bestScore, ply),
+				depth + QUIESCENCE_DEPTH, bestMove, flag);
+		return bestScore;
+	}
+
+	/**
+	   Quiescence search: plays out the captures of a position until a side
+	   that does not have to take is reached. The usual stand-pat cutoff,
+	   where the side to move keeps the static score instead of taking, is
+	   not allowed in antichess because taking is compulsory, so when there
+	   is a capture every capture is searched. A position without captures
+	   is quiet and is evaluated, or is a win if the side has no moves.
+	   A capture sequence still going after QUIESCENCE_DEPTH plies is cut off
+	   and evaluated.
+	   @param depth  the captures left to play out
+	   @param ply    the distance from the root
+	   @param alpha  the alpha value
+	   @param beta   the beta value
+	   @return the score of the position for the side to move
+	 */
+	private int quiesce(int depth, int ply, int alpha, int beta)
+	{
+		pvLength[ply] = ply;
+		stats.qnodes++;
+		if (++stats.nodes % CHECK_INTERVAL == 0 && outOfBudget())
+			stopped = true;
+		if (stopped)
+			return 0;
+
+		int tablebaseScore = probeTablebase(ply);
+		if (tablebaseScore != NO_SCORE)
+			return tablebaseScore;
+
+		// Legal moves are either all captures or all quiet moves
+		int moveCount = moveGenerator.generate(pos, ply);
+		if (moveCount == 0)
+			return WIN - ply;
+		int[] moves = moveGenerator.getMoves(ply);
+		if (!PackedMove.isCapture(moves[0]) || depth == 0
+				|| ply >= Position.MAX_PLY - 1)
+			return evaluate(pos, ply);
+
+		// Capture sequences transpose a lot, so their results are kept too.
+		// An entry is only used if it played out at least as many captures.
+		long hash = pos.getHash();
+		int ttMove = PackedMove.NONE;
+		long entry = transpositionTable.probe(hash);
+		if (entry != 0)
+		{
+			ttMove = TranspositionEntry.bestMove(entry);
+			if (TranspositionEntry.depth(entry) >= depth)
+			{
+				int entryScore = scoreFromTable(TranspositionEntry.score(entry), ply);
+				int flag = TranspositionEntry.flag(entry);
+				if (flag == TranspositionEntry.EXACT
+						|| flag == TranspositionEntry.LOWERBOUND && entryScore >= beta
+						|| flag == TranspositionEntry.UPPERBOUND && entryScore <= alpha)
+				{
+					stats.ttHits++;
+					return entryScore;
+				}
+			}
+		}
+
+		int[] scores = moveScores[ply];
+		moveOrderer.scoreMoves(pos, moves, scores, moveCount, PackedMove.NONE,
+				ttMove, ply);
+		int originalAlpha = alpha;
+		int bestScore = -INFINITY;
+		int bestMove = PackedMove.NONE;
+		for (int i = 0; i < moveCount; i++)
+		{
+			int move = moveOrderer.pickNext(moves, scores, moveCount, i);
+			pos.makeMove(move);
+			int score = -quiesce(depth - 1, ply + 1, -beta, -alpha);
+			pos.unmakeMove();
+			if (stopped)
+				return 0;
+
+			if (score > bestScore)
+			{
+				bestScore = score;
+				bestMove = move;
+				if (score > alpha)
+				{
+					alpha = score;
+					if (alpha >= beta)
+						break;
+				}
+			}
+		}
+
+		int flag;
+		if (bestScore <= originalAlpha)
+			flag = TranspositionEntry.UPPERBOUND;
+		else if (bestScore >= beta)
+			flag = TranspositionEntry.LOWERBOUND;
+		else
+			flag = TranspositionEntry.EXACT;
+		transpositionTable.store(hash, scoreToTable(bestScore, ply), depth,
+				bestMove, flag);
+		return bestScore;
+	}
+
+	/**
+	   Decides whether the position is drawn by repetition or the fifty-move
+	   rule. A position repeated since the root is taken as a draw at once,
+	   since the side that steered back into it can do so again; one last
+	   seen before the root has to have occurred twice, as in the game.
+	   Captures reset the count, so the quiescence search needs no check.
+	   @param ply  the distance from the root
+	   @return whether the position is a draw
+	 */
+	private boolean isDraw(int ply)
+	{
+		int earlier = pos.findRepetition(pos.getPly());
+		if (earlier >= rootPly
+				|| earlier >= 0 && pos.findRepetition(earlier) >= 0)
+			return true;
+		// A side with no moves has still won, as Engine.getResult decides
+		return pos.getHalfmoveClock() >= Engine.FIFTY_MOVE_PLIES
+				&& moveGenerator.generate(pos, ply) > 0;
+	}
+
+	/**
+	   Looks the position up in the tablebase, which knows how far a won or
+	   lost position is from the end
+	   @param ply  the distance from the root
+	   @return the score of the position, or NO_SCORE if it is not found
+	 */
+	private int probeTablebase(int ply)
+	{
+		int value = tablebase.probe(pos);
+		if (value == Tablebase.UNKNOWN)
+			return NO_SCORE;
+		stats.tablebaseHits++;
+		if (value == Tablebase.DRAW)
+			return 0;
+		int score = WIN - ply - Tablebase.distance(value);
+		return Tablebase.isWin(value) ? score : -score;
+	}
+
+	/**
+	   Evaluates the position for the side to move, see Evaluation. A side
+	   with no pieces left has won.
+	   @param pos  the position to evaluate
+	   @param ply  the distance from the root
+	   @return the score of the position
+	 */
+	static int evaluate(Position pos, int ply)
+	{
+		if (pos.getPieceCount(pos.getSideToMove()) == 0)
+			return WIN - ply;
+		return Evaluation.evaluate(pos);
+	}
+
+	private void updatePv(int ply, int move)
+	{
+		pvTable[ply][ply] = move;
+		System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1,
+				pvLength[ply + 1] - ply - 1);
+		pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+	}
+
+	private boolean outOfBudget()
+	{
+		return timeLimit > 0
+				&& System.currentTimeMillis() - startTime >= timeLimit
+				|| nodeLimit > 0 && stats.nodes >= nodeLimit;
+	}
+
+	// Win scores are stored relative to the position, not the root
+	private static int scoreToTable(int score, int ply)
+	{
+		if (score > WIN_BOUND)
+			return score + ply;
+		if (score < -WIN_BOUND)
+			return score - ply;
+		return score;
+	}
+
+	private static int scoreFromTable(int score, int ply)
+	{
+		if (score > WIN_BOUND)
+			return score - ply;
+		if (score < -WIN_BOUND)
+			return score + ply;
+		return score;
+	}
+
+	/**
+	   Gets the principal variation of the last completed iteration
+	   @return the packed moves of the principal variation
+	 */
+	public int[] getPrincipalVariation()
+	{
+		int[] pv = new int[previousPvLength];
+		System.arraycopy(previousPv, 0, pv, 0, previousPvLength);
+		return pv;
+	}
+
+	public int getScore()
+	{
+		return bestScore;
+	}
+
+	public int getCompletedDepth()
+	{
+		return completedDepth;
+	}
+
+	public long getNodes()
+	{
+		return stats.nodes;
+	}
+
+	/**
+	   Gets the counters of the last search
+	   @return the search statistics
+	 */
+	public SearchStats getStats()
+	{
+		return stats;
+	}
+
+	public long getElapsedMillis()
+	{
+		return System.currentTimeMillis() - startTime;
+	}
+}
@@ -0,0 +1,96 @@
+/**
+   Counters collected during a search, used to measure how well moves are
+   ordered. A well ordered search gets most of its cutoffs from the first
+   move it tries.
+ */
+public class SearchStats
+{
+	long nodes;          // Positions visited, quiescence included
+	long qnodes;         // Positions visited by the quiescence search
+	long ttHits;         // Positions whose table entry ended the search early
+	long tablebaseHits;  // Positions found in the endgame tablebase
+	long draws;          // Positions drawn by repetition or the fifty-move rule
+	long betaCutoffs;    // Positions where a move failed high
+	long firstMoveCutoffs; // Cutoffs caused by the first move tried
+
+	/**
+	   Resets all counters to zero
+	 */
+	public void clear()
+	{
+		nodes = 0;
+		qnodes = 0;
+		ttHits = 0;
+		tablebaseHits = 0;
+		draws = 0;
+		betaCutoffs = 0;
+		firstMoveCutoffs = 0;
+	}
+
+	/**
+	   Adds the counters of another search to these
+	   @param other  the counters to add
+	 */
+	public void add(SearchStats other)
+	{
+		nodes += other.nodes;
+		qnodes += other.qnodes;
+		ttHits += other.ttHits;
+		tablebaseHits += other.tablebaseHits;
+		draws += other.draws;
+		betaCutoffs += other.betaCutoffs;
+		firstMoveCutoffs += other.firstMoveCutoffs;
+	}
+
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	public long getQnodes()
+	{
+		return qnodes;
+	}
+
+	public long getTtHits()
+	{
+		return ttHits;
+	}
+
+	public long getTablebaseHits()
+	{
+		return tablebaseHits;
+	}
+
+	public long getDraws()
+	{
+		return draws;
+	}
+
+	public long getBetaCutoffs()
+	{
+		return betaCutoffs;
+	}
+
+	public long getFirstMoveCutoffs()
+	{
+		return firstMoveCutoffs;
+	}
+
+	/**
+	   Gets the share of cutoffs that came from the first move tried
+	   @return a rate between 0 and 1
+	 */
+	public double getFirstMoveCutoffRate()
+	{
+		return betaCutoffs == 0 ? 0.0 : (double) firstMoveCutoffs / betaCutoffs;
+	}
+
+	public String toString()
+	{
+		return "nodes " + nodes + " qnodes " + qnodes + " tthits " + ttHits
+				+ " tbhits " + tablebaseHits + " draws " + draws
+				+ " cutoffs " + betaCutoffs
+				+ " firstmove " + String.format("%.1f%%", getFirstMoveCutoffRate() * 100);
+	}
+}
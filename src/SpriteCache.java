@@ -0,0 +1,97 @@
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import javax.swing.ImageIcon;
+
+/**
+   Piece images for drawing the board. Each image is read from disk the first
+   time a piece of that type and colour is drawn and scaled once for the
+   current sprite size, so creating pieces costs no I/O or decoding.
+ */
+public class SpriteCache
+{
+	private static final String[] TYPE_NAMES = { "Pawn", "Knight", "Bishop",
+			"Rook", "Queen", "King" };
+
+	// Images as read from disk, shared by every cache and indexed by piece code
+	private static final Image[] originals = new Image[12];
+
+	// Images scaled to the sprite size, indexed by piece code
+	private Image[] sprites;
+
+	private int size;
+
+	/**
+	   Constructs an empty cache
+	   @param size  the width and height to draw pieces at in pixels
+	 */
+	public SpriteCache(int size)
+	{
+		sprites = new Image[12];
+		this.size = size;
+	}
+
+	/**
+	   Changes the size pieces are drawn at, for example when the board is
+	   resized. The images are scaled again the next time they are drawn.
+	   @param newSize  the width and height in pixels
+	 */
+	public void setSize(int newSize)
+	{
+		if (newSize != size)
+		{
+			size = newSize;
+			Arrays.fill(sprites, null);
+		}
+	}
+
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	   Gets the image of a piece at the current size
+	   @param type    the piece type, see Position
+	   @param colour  the piece colour, see Position
+	   @return the image to draw
+	 */
+	public Image getSprite(int type, int colour)
+	{
+		int code = Position.pieceCode(type, colour);
+		Image sprite = sprites[code];
+		if (sprite == null)
+		{
+			sprite = scale(load(code, type, colour));
+			sprites[code] = sprite;
+		}
+		return sprite;
+	}
+
+	private static synchronized Image load(int code, int type, int colour)
+	{
+		if (originals[code] == null)
+			originals[code] = new ImageIcon("images/"
+					+ (colour == Position.WHITE ? "white" : "black")
+					+ TYPE_NAMES[type] + ".png").getImage();
+		return originals[code];
+	}
+
+	// Draws the image once into a buffer of the sprite size
+	private Image scale(Image original)
+	{
+		if (original.getWidth(null) <= 0) // Missing file, nothing to scale
+			return original;
+		BufferedImage scaled = new BufferedImage(size, size,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(original, 0, 0, size, size, null);
+		g.dispose();
+		return scaled;
+	}
+}
@@ -0,0 +1,269 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+   Endgame tablebases: the game theoretic value of every position with a
+   few pieces, read from files written by TablebaseGenerator.
+
+   There is one file per material signature, named after the pieces of each
+   side, for example KRvBP.tb for a white king and rook against a black
+   bishop and pawn. The file holds one byte per position: DRAW, a win for
+   the side to move in some plies or a loss in some plies. Positions are
+   indexed by the squares of the pieces, white's then black's, each side's
+   from king down to pawn, 6 bits per square, and then by the side to move.
+   Pieces of the same type and colour are taken in ascending square order.
+   Pawns on their starting row are taken to have not moved.
+
+   Files are memory mapped when first needed, so probing reads the page
+   cache directly and several searches can probe at once.
+ */
+public class Tablebase
+{
+	public static final int UNKNOWN = -1;
+
+	public static final int DRAW = 0;
+
+	// Values from 1 are a win in value - WIN_BASE plies, from 128 a loss
+	static final int WIN_BASE = 1;
+	static final int LOSS_BASE = 128;
+
+	// Longest distance a byte can hold
+	static final int MAX_DISTANCE = 126;
+
+	// Largest number of pieces a file is generated for
+	public static final int MAX_PIECES = 4;
+
+	private static final String PIECE_LETTERS = "PNBRQK";
+
+	// Piece codes in index order: white king down to pawn, then black's
+	static final int[] CANONICAL = { 5, 4, 3, 2, 1, 0, 11, 10, 9, 8, 7, 6 };
+
+	private static Tablebase defaultTablebase;
+
+	// Stands in for a file that does not exist
+	private static final ByteBuffer MISSING = ByteBuffer.allocate(0);
+
+	private File directory;
+
+	// The table of each material key, see key, null until looked for
+	private AtomicReferenceArray<ByteBuffer> tables;
+
+	// Most pieces of any table that may be found
+	private int maxPieces;
+
+	/**
+	   Constructs a tablebase reading its files from a directory
+	   @param directory  the directory holding the .tb files
+	 */
+	public Tablebase(File directory)
+	{
+		this.directory = directory;
+		tables = new AtomicReferenceArray<ByteBuffer>(1 << 4 * MAX_PIECES);
+		String[] names = directory.list();
+		if (names != null)
+		{
+			for (String name : names)
+			{
+				if (name.endsWith(".tb"))
+					maxPieces = Math.max(maxPieces, name.length() - 4);
+			}
+		}
+		maxPieces = Math.min(maxPieces, MAX_PIECES);
+	}
+
+	/**
+	   Gets the tablebase in the directory named by -Dantichess.tb, by
+	   default "tablebases", which every search probes
+	   @return the shared tablebase
+	 */
+	public static synchronized Tablebase getDefault()
+	{
+		if (defaultTablebase == null)
+			defaultTablebase = new Tablebase(new File(System.getProperty(
+					"antichess.tb", "tablebases")));
+		return defaultTablebase;
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	   Gets the most pieces a position may have to be found in this tablebase
+	   @return the number of pieces, 0 if there are no files
+	 */
+	public int getMaxPieces()
+	{
+		return maxPieces;
+	}
+
+	/**
+	   Looks up the value of a position
+	   @param pos  the position
+	   @return DRAW, a value for which isWin or isLoss holds, or UNKNOWN if
+	           the position has too many pieces or its file is missing
+	 */
+	public int probe(Position pos)
+	{
+		if (Long.bitCount(pos.getOccupied()) > maxPieces)
+			return UNKNOWN;
+		int key = 0;
+		int shift = 0;
+		int index = 0;
+		int size = 1;
+		for (int code : CANONICAL)
+		{
+			long pieces = pos.getPieces(Position.typeOf(code),
+					Position.colourOf(code));
+			while (pieces != 0)
+			{
+				int sq = Long.numberOfTrailingZeros(pieces);
+				pieces &= pieces - 1;
+				key |= code + 1 << shift;
+				shift += 4;
+				index += sq * size;
+				size <<= 6;
+			}
+		}
+		ByteBuffer table = table(key);
+		if (table == null)
+			return UNKNOWN;
+		return table.get(index + (pos.getSideToMove() - 1) * size) & 0xFF;
+	}
+
+	/**
+	   Gets the table of a material key, mapping its file the first time
+	   @param key  the material key
+	   @return the table, or null if there is no file for it
+	 */
+	ByteBuffer table(int key)
+	{
+		ByteBuffer table = tables.get(key);
+		if (table == null)
+			table = load(key);
+		return table == MISSING ? null : table;
+	}
+
+	private synchronized ByteBuffer load(int key)
+	{
+		ByteBuffer table = tables.get(key);
+		if (table != null)
+			return table;
+		table = MISSING;
+		File file = new File(directory, name(key) + ".tb");
+		if (file.length() == size(pieceCount(key)))
+		{
+			try (RandomAccessFile in = new RandomAccessFile(file, "r"))
+			{
+				table = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+						file.length());
+			}
+			catch (IOException e)
+			{
+				table = MISSING;
+			}
+		}
+		tables.set(key, table);
+		return table;
+	}
+
+	/**
+	   Uses a table held in memory for a material key, for generating
+	   @param key    the material key
+	   @param table  the table
+	 */
+	void put(int key, ByteBuffer table)
+	{
+		tables.set(key, table);
+		maxPieces = Math.max(maxPieces, pieceCount(key));
+	}
+
+	/**
+	   Drops the table of a material key, so that its file is mapped the
+	   next time it is needed
+	   @param key  the material key
+	 */
+	void evict(int key)
+	{
+		tables.set(key, null);
+	}
+
+	/**
+	   Builds the material key of a list of pieces, a nibble per piece
+	   holding its code plus one
+	   @param codes  the piece codes in CANONICAL order
+	   @return the key
+	 */
+	static int key(int[] codes)
+	{
+		int key = 0;
+		for (int i = 0; i < codes.length; i++)
+			key |= codes[i] + 1 << 4 * i;
+		return key;
+	}
+
+	static int pieceCount(int key)
+	{
+		int count = 0;
+		for (; key != 0; key >>>= 4)
+			count++;
+		return count;
+	}
+
+	/**
+	   Gets the number of positions in a table
+	   @param pieces  the number of pieces
+	   @return the number of bytes in the table
+	 */
+	static int size(int pieces)
+	{
+		return 2 << 6 * pieces;
+	}
+
+	/**
+	   Gets the name of a material key, for example KRvBP
+	   @param key  the material key
+	   @return the name of the file without .tb
+	 */
+	static String name(int key)
+	{
+		StringBuilder white = new StringBuilder();
+		StringBuilder black = new StringBuilder();
+		for (; key != 0; key >>>= 4)
+		{
+			int code = (key & 15) - 1;
+			char letter = PIECE_LETTERS.charAt(Position.typeOf(code));
+			if (Position.colourOf(code) == Position.WHITE)
+				white.append(letter);
+			else
+				black.append(letter);
+		}
+		return white + "v" + black;
+	}
+
+	public static boolean isWin(int value)
+	{
+		return value >= WIN_BASE && value < LOSS_BASE;
+	}
+
+	public static boolean isLoss(int value)
+	{
+		return value >= LOSS_BASE;
+	}
+
+	/**
+	   Gets the number of plies to the end of the game of a won or lost
+	   position
+	   @param value  a win or loss value
+	   @return the distance in plies
+	 */
+	public static int distance(int value)
+	{
+		return value >= LOSS_BASE ? value - LOSS_BASE : value - WIN_BASE;
+	}
+}
@@ -0,0 +1,400 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+   Generates the Tablebase files by retrograde analysis. The tables are
+   built smallest first, so every capture or promotion leads to a table that
+   is already done. Within a table, positions where the side to move has no
+   move are won at once; then, one ply at a time, a position is won in n
+   plies if a move reaches a position lost in n - 1, and lost in n if every
+   move reaches a position won in at most n - 1. Positions never resolved
+   are draws. Each pass over a table is split between all cores with
+   fork/join.
+
+   Five pieces are not offered: a table would need 2^31 bytes, more than an
+   int index or one mapping can address, and there are thousands of them.
+   Usage: java TablebaseGenerator [maxPieces]
+ */
+public class TablebaseGenerator
+{
+	// Positions one fork/join task checks without splitting further
+	private static final int LEAF_POSITIONS = 1 << 14;
+
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private Tablebase tablebase;
+
+	// Longest distance to the end in each table, by material key
+	private Map<Integer, Integer> distances;
+
+	/**
+	   Constructs a generator writing into a tablebase's directory
+	   @param tablebase  the tablebase, which also gives the smaller tables
+	 */
+	public TablebaseGenerator(Tablebase tablebase)
+	{
+		this.tablebase = tablebase;
+		distances = new HashMap<Integer, Integer>();
+	}
+
+	/**
+	   Lists every material signature with the given number of pieces where
+	   both sides have at least one, fewest pawns first
+	   @param pieces  the number of pieces
+	   @return the piece codes of each signature in Tablebase.CANONICAL order
+	 */
+	static List<int[]> signatures(int pieces)
+	{
+		List<int[]> signatures = new ArrayList<int[]>();
+		for (int white = 1; white < pieces; white++)
+		{
+			for (int[] whiteTypes : typeLists(white, Position.KING))
+			{
+				for (int[] blackTypes : typeLists(pieces - white, Position.KING))
+				{
+					int[] codes = new int[pieces];
+					for (int i = 0; i < white; i++)
+						codes[i] = Position.pieceCode(whiteTypes[i], Position.WHITE);
+					for (int i = 0; i < pieces - white; i++)
+						codes[white + i] = Position.pieceCode(blackTypes[i],
+								Position.BLACK);
+					signatures.add(codes);
+				}
+			}
+		}
+		Collections.sort(signatures, new Comparator<int[]>() {
+			public int compare(int[] a, int[] b)
+			{
+				return pawns(a) - pawns(b);
+			}
+		});
+		return signatures;
+	}
+
+	// Every list of types of the given length, in descending order
+	private static List<int[]> typeLists(int length, int highest)
+	{
+		List<int[]> lists = new ArrayList<int[]>();
+		if (length == 0)
+		{
+			lists.add(new int[0]);
+			return lists;
+		}
+		for (int type = highest; type >= Position.PAWN; type--)
+		{
+			for (int[] rest : typeLists(length - 1, type))
+			{
+				int[] list = new int[length];
+				list[0] = type;
+				System.arraycopy(rest, 0, list, 1, rest.length);
+				lists.add(list);
+			}
+		}
+		return lists;
+	}
+
+	private static int pawns(int[] codes)
+	{
+		int count = 0;
+		for (int code : codes)
+		{
+			if (Position.typeOf(code) == Position.PAWN)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	   Builds the table of one material signature and writes its file. The
+	   tables its captures and promotions lead to must already exist.
+	   @param codes  the piece codes in Tablebase.CANONICAL order
+	   @return the table
+	   @throws IOException if the file cannot be written
+	 */
+	public byte[] generate(int[] codes) throws IOException
+	{
+		byte[] values = new byte[Tablebase.size(codes.length)];
+		tablebase.put(Tablebase.key(codes), ByteBuffer.wrap(values));
+
+		// Tables reached by a capture or promotion may end further away than
+		// this one, so passes go on at least as far as theirs do
+		int dependencies = dependencyDistance(codes);
+		int longest = 0;
+		int distance = 0;
+		while (true)
+		{
+			long resolved = pool.invoke(new Pass(codes, values, 0,
+					values.length, distance));
+			if (resolved == 0 && distance > dependencies)
+				break;
+			if (resolved > 0)
+				longest = distance;
+			if (++distance > Tablebase.MAX_DISTANCE)
+				throw new IllegalStateException(Tablebase.name(Tablebase
+						.key(codes)) + " has positions too far from the end");
+		}
+
+		File file = new File(tablebase.getDirectory(),
+				Tablebase.name(Tablebase.key(codes)) + ".tb");
+		try (OutputStream out = new FileOutputStream(file))
+		{
+			out.write(values);
+		}
+
+		// Read through the file from now on rather than keeping it on the heap
+		tablebase.evict(Tablebase.key(codes));
+		distances.put(Tablebase.key(codes), longest);
+		return values;
+	}
+
+	/**
+	   Finds the longest distance to the end in the tables a capture, a
+	   promotion or a capture that promotes leads to
+	   @param codes  the piece codes of the table
+	   @return the longest distance in plies
+	 */
+	int dependencyDistance(int[] codes)
+	{
+		int longest = 0;
+		for (int i = 0; i < codes.length; i++)
+		{
+			longest = Math.max(longest, distance(without(codes, i)));
+			if (Position.typeOf(codes[i]) != Position.PAWN)
+				continue;
+			int colour = Position.colourOf(codes[i]);
+			for (int type = Position.KNIGHT; type <= Position.KING; type++)
+			{
+				int[] promoted = codes.clone();
+				promoted[i] = Position.pieceCode(type, colour);
+				longest = Math.max(longest, distance(promoted));
+				// A pawn taking on the last row also promotes
+				for (int j = 0; j < codes.length; j++)
+				{
+					if (Position.colourOf(codes[j]) != colour)
+						longest = Math.max(longest,
+								distance(without(promoted, j)));
+				}
+			}
+		}
+		return longest;
+	}
+
+	// The pieces with one of them left out
+	private static int[] without(int[] codes, int i)
+	{
+		int[] rest = new int[codes.length - 1];
+		System.arraycopy(codes, 0, rest, 0, i);
+		System.arraycopy(codes, i + 1, rest, i, rest.length - i);
+		return rest;
+	}
+
+	// Longest distance of the table of some pieces, 0 if it has none
+	private int distance(int[] codes)
+	{
+		int[] sorted = new int[codes.length];
+		for (int i = 0; i < codes.length; i++)
+			sorted[i] = rank(codes[i]);
+		Arrays.sort(sorted);
+		for (int i = 0; i < codes.length; i++)
+			sorted[i] = rank(sorted[i]);
+		Integer distance = distances.get(Tablebase.key(sorted));
+		return distance == null ? 0 : distance;
+	}
+
+	// Place of a piece code in Tablebase.CANONICAL, which is also the code
+	// at a place
+	private static int rank(int code)
+	{
+		return code < 6 ? 5 - code : 17 - code;
+	}
+
+	/**
+	   Sets up the position of a table index
+	   @param pos    the position to set up
+	   @param codes  the piece codes of the table
+	   @param index  the index
+	   @return false if the index is not a position: two pieces on a square,
+	           a pawn on the first or last row, or pieces of one type and
+	           colour out of ascending order
+	 */
+	static boolean setUp(Position pos, int[] codes, int index)
+	{
+		pos.clear();
+		int lastCode = -1;
+		int lastSquare = -1;
+		for (int i = 0; i < codes.length; i++)
+		{
+			int code = codes[i];
+			int sq = index >> 6 * i & 63;
+			if (code == lastCode && sq <= lastSquare
+					|| pos.getPiece(sq) != Position.NO_PIECE)
+				return false;
+			int type = Position.typeOf(code);
+			int colour = Position.colourOf(code);
+			int row = sq >> 3;
+			if (type == Position.PAWN && (row == 0 || row == 7))
+				return false;
+			pos.addPiece(sq, type, colour, type == Position.PAWN
+					&& row != (colour == Position.WHITE ? 6 : 1));
+			lastCode = code;
+			lastSquare = sq;
+		}
+		pos.setSideToMove(index >> 6 * codes.length == 0 ? Position.WHITE
+				: Position.BLACK);
+		return true;
+	}
+
+	/**
+	   One pass over a range of a table, resolving the positions that end
+	   in exactly the given number of plies
+	 */
+	private class Pass extends RecursiveTask<Long>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int[] codes;
+		private byte[] values;
+		private int start;
+		private int end;
+		private int distance;
+
+		Pass(int[] codes, byte[] values, int start, int end, int distance)
+		{
+			this.codes = codes;
+			this.values = values;
+			this.start = start;
+			this.end = end;
+			this.distance = distance;
+		}
+
+		protected Long compute()
+		{
+			if (end - start > LEAF_POSITIONS)
+			{
+				int middle = (start + end) >>> 1;
+				Pass left = new Pass(codes, values, start, middle, distance);
+				left.fork();
+				long right = new Pass(codes, values, middle, end, distance)
+						.compute();
+				return right + left.join();
+			}
+
+			Position pos = new Position();
+			int[] moves = new int[MoveGenerator.MAX_MOVES];
+			long resolved = 0;
+			for (int index = start; index < end; index++)
+			{
+				if (values[index] != Tablebase.DRAW || !setUp(pos, codes, index))
+					continue;
+				int count = MoveGenerator.generateLegal(pos, moves);
+				int value = Tablebase.DRAW;
+				if (count == 0) // No moves, which wins
+					value = Tablebase.WIN_BASE;
+				else if (distance > 0)
+					value = resolve(pos, moves, count);
+				if (value != Tablebase.DRAW)
+				{
+					values[index] = (byte) value;
+					resolved++;
+				}
+			}
+			return resolved;
+		}
+
+		// Wins if a move reaches a loss a ply shorter, loses if all reach wins
+		private int resolve(Position pos, int[] moves, int count)
+		{
+			boolean allWon = true;
+			for (int i = 0; i < count; i++)
+			{
+				pos.makeMove(moves[i]);
+				int value = childValue(pos);
+				pos.unmakeMove();
+				if (Tablebase.isLoss(value)
+						&& Tablebase.distance(value) == distance - 1)
+					return Tablebase.WIN_BASE + distance;
+				if (!Tablebase.isWin(value)
+						|| Tablebase.distance(value) > distance - 1)
+					allWon = false;
+			}
+			return allWon ? Tablebase.LOSS_BASE + distance : Tablebase.DRAW;
+		}
+
+		private int childValue(Position pos)
+		{
+			// Taking the last piece leaves the opponent to move with none
+			if (pos.getPieceCount(pos.getSideToMove()) == 0)
+				return Tablebase.WIN_BASE;
+			return tablebase.probe(pos);
+		}
+	}
+
+	/**
+	   Generates every table up to the given number of pieces, skipping
+	   tables whose files exist already
+	   @param args  the most pieces, 3 by default, at most Tablebase.MAX_PIECES
+	   @throws IOException if a file cannot be written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int maxPieces = Math.min(Tablebase.MAX_PIECES,
+				args.length > 0 ? Integer.parseInt(args[0]) : 3);
+		Tablebase tablebase = Tablebase.getDefault();
+		tablebase.getDirectory().mkdirs();
+		TablebaseGenerator generator = new TablebaseGenerator(tablebase);
+		System.out.println("generating into " + tablebase.getDirectory()
+				+ " on " + pool.getParallelism() + " threads");
+		for (int pieces = 2; pieces <= maxPieces; pieces++)
+		{
+			for (int[] codes : signatures(pieces))
+			{
+				int key = Tablebase.key(codes);
+				String name = Tablebase.name(key);
+				ByteBuffer existing = tablebase.table(key);
+				if (existing != null)
+				{
+					generator.noteDistance(key, existing);
+					continue;
+				}
+				long start = System.currentTimeMillis();
+				byte[] values = generator.generate(codes);
+				long wins = 0;
+				long losses = 0;
+				for (byte value : values)
+				{
+					if (Tablebase.isWin(value & 0xFF))
+						wins++;
+					else if (Tablebase.isLoss(value & 0xFF))
+						losses++;
+				}
+				System.out.println(String.format("%-8s wins %-9d losses %-9d %6d ms",
+						name, wins, losses, System.currentTimeMillis() - start));
+			}
+		}
+	}
+
+	// Finds the longest distance of a table read from its file
+	void noteDistance(int key, ByteBuffer table)
+	{
+		int longest = 0;
+		for (int i = 0; i < table.limit(); i++)
+		{
+			int value = table.get(i) & 0xFF;
+			if (value != Tablebase.DRAW)
+				longest = Math.max(longest, Tablebase.distance(value));
+		}
+		distances.put(key, longest);
+	}
+}
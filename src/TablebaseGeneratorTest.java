@@ -0,0 +1,179 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+   Generates the tables of a pawn against a rook and a knight, which a
+   capture that also promotes turns into a two piece table, and checks them
+   against a one-ply search over the tables and a plain search that uses
+   no tables at all. Also checks that a table's passes go on as far as the
+   tables its captures that promote lead to.
+ */
+public class TablebaseGeneratorTest {
+
+	// Plies the plain search looks ahead; it is exhaustive, so kept small
+	private static final int PLAIN_DEPTH = 3;
+
+	// Every this many indexes of a table are checked by the plain search
+	private static final int PLAIN_STRIDE = 997;
+
+	private static File directory;
+
+	private static Tablebase tablebase;
+
+	@BeforeClass
+	public static void generate() throws IOException {
+		directory = Files.createTempDirectory("tablebase").toFile();
+		tablebase = new Tablebase(directory);
+		TablebaseGenerator generator = new TablebaseGenerator(tablebase);
+		for (int[] codes : TablebaseGenerator.signatures(2))
+			generator.generate(codes);
+		for (int[] codes : pawnAgainstRookAndKnight())
+			generator.generate(codes);
+	}
+
+	@AfterClass
+	public static void deleteTables() {
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+	// One white piece against a black rook and knight, pawnless ones first
+	// as the pawn promotes to each of them
+	private static List<int[]> pawnAgainstRookAndKnight() {
+		List<int[]> signatures = new ArrayList<int[]>();
+		for (int[] codes : TablebaseGenerator.signatures(3)) {
+			if (codes[1] == Position.pieceCode(Position.ROOK, Position.BLACK)
+					&& codes[2] == Position.pieceCode(Position.KNIGHT, Position.BLACK))
+				signatures.add(codes);
+		}
+		return signatures;
+	}
+
+	@Test
+	public void capturesThatPromoteAreDependencies() {
+		// Only the table of a pawn taking the rook and becoming a queen is known
+		int[] queenAgainstKnight = { Position.pieceCode(Position.QUEEN, Position.WHITE),
+				Position.pieceCode(Position.KNIGHT, Position.BLACK) };
+		byte[] values = new byte[Tablebase.size(2)];
+		values[0] = (byte) (Tablebase.WIN_BASE + 40);
+		TablebaseGenerator generator = new TablebaseGenerator(tablebase);
+		generator.noteDistance(Tablebase.key(queenAgainstKnight), ByteBuffer.wrap(values));
+
+		int[] pawnAgainstRookAndKnight = { Position.pieceCode(Position.PAWN, Position.WHITE),
+				Position.pieceCode(Position.ROOK, Position.BLACK),
+				Position.pieceCode(Position.KNIGHT, Position.BLACK) };
+		assertEquals(40, generator.dependencyDistance(pawnAgainstRookAndKnight));
+	}
+
+	@Test
+	public void everyPositionAgreesWithAOnePlySearch() {
+		for (int[] codes : pawnAgainstRookAndKnight()) {
+			String name = Tablebase.name(Tablebase.key(codes));
+			ByteBuffer table = tablebase.table(Tablebase.key(codes));
+			Position pos = new Position();
+			int[] moves = new int[MoveGenerator.MAX_MOVES];
+			for (int index = 0; index < table.limit(); index++) {
+				if (!TablebaseGenerator.setUp(pos, codes, index))
+					continue;
+				assertEquals(name + " index " + index, onePly(pos, moves),
+						table.get(index) & 0xFF);
+			}
+		}
+	}
+
+	@Test
+	public void shortResultsMatchAPlainSearch() {
+		for (int[] codes : pawnAgainstRookAndKnight()) {
+			String name = Tablebase.name(Tablebase.key(codes));
+			ByteBuffer table = tablebase.table(Tablebase.key(codes));
+			Position pos = new Position();
+			for (int index = 0; index < table.limit(); index += PLAIN_STRIDE) {
+				if (!TablebaseGenerator.setUp(pos, codes, index))
+					continue;
+				int value = table.get(index) & 0xFF;
+				int expected = 0;
+				if (value != Tablebase.DRAW && Tablebase.distance(value) <= PLAIN_DEPTH)
+					expected = (Tablebase.distance(value) + 1)
+							* (Tablebase.isWin(value) ? 1 : -1);
+				assertEquals(name + " index " + index, expected,
+						plainSearch(pos, PLAIN_DEPTH));
+			}
+		}
+	}
+
+	/**
+	   Values a position from the tablebase values of its moves, as the
+	   generator defines them
+	   @param pos the position, which has pieces of both sides
+	   @param moves room for the moves
+	   @return the tablebase value the position should have
+	 */
+	private int onePly(Position pos, int[] moves) {
+		int count = MoveGenerator.generateLegal(pos, moves);
+		if (count == 0)
+			return Tablebase.WIN_BASE;
+		int shortestLoss = Integer.MAX_VALUE;
+		int longestWin = -1;
+		boolean allWon = true;
+		for (int i = 0; i < count; i++) {
+			pos.makeMove(moves[i]);
+			int value = pos.getPieceCount(pos.getSideToMove()) == 0
+					? Tablebase.WIN_BASE : tablebase.probe(pos);
+			pos.unmakeMove();
+			assertTrue("child table missing", value != Tablebase.UNKNOWN);
+			if (Tablebase.isLoss(value))
+				shortestLoss = Math.min(shortestLoss, Tablebase.distance(value));
+			else if (Tablebase.isWin(value))
+				longestWin = Math.max(longestWin, Tablebase.distance(value));
+			else
+				allWon = false;
+		}
+		if (shortestLoss != Integer.MAX_VALUE)
+			return Tablebase.WIN_BASE + shortestLoss + 1;
+		return allWon ? Tablebase.LOSS_BASE + longestWin + 1 : Tablebase.DRAW;
+	}
+
+	/**
+	   Solves a position by trying every line, without any tables
+	   @param pos the position
+	   @param depth the plies to look ahead
+	   @return the plies to the end plus one, positive if the side to move
+	           wins and negative if it loses, or 0 if the end is further away
+	 */
+	private static int plainSearch(Position pos, int depth) {
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generateLegal(pos, moves);
+		if (count == 0 || pos.getPieceCount(pos.getSideToMove()) == 0)
+			return 1;
+		if (depth == 0)
+			return 0;
+		int shortestLoss = Integer.MAX_VALUE;
+		int longestWin = 0;
+		boolean allWon = true;
+		for (int i = 0; i < count; i++) {
+			pos.makeMove(moves[i]);
+			int result = plainSearch(pos, depth - 1);
+			pos.unmakeMove();
+			if (result < 0)
+				shortestLoss = Math.min(shortestLoss, -result);
+			else if (result > 0)
+				longestWin = Math.max(longestWin, result);
+			else
+				allWon = false;
+		}
+		if (shortestLoss != Integer.MAX_VALUE)
+			return shortestLoss + 1;
+		return allWon ? -(longestWin + 1) : 0;
+	}
+}
@@ -1,23 +1,59 @@
 
+/**
+   Packs a transposition table entry into a single long so that the table can
+   be stored in primitive arrays.
+   Bits 0-15 hold the best move, bits 16-23 the depth, bits 24-25 the flag,
+   bit 26 marks the entry as used, bits 27-31 the search age and bits 32-63
+   the score.
+ */
 public class TranspositionEntry {
-	
+
 	 public static final int EXACT = 0;
 	 public static final int LOWERBOUND = 1;
 	 public static final int UPPERBOUND = 2;
-	
-	int score;     // The evaluation score of the board position
-    int depth;     // The depth at which the board position was evaluated
-    Move bestMove; // The best move found at this position
-    int flag;       // Whether the entry is an exact value, a lower bound, or an upper bound
-
-    // Constructor to initialize the entry
-    public TranspositionEntry(int score, int depth, Move bestMove, int flag) {
-        this.score = score;
-        this.depth = depth;
-        this.bestMove = bestMove;
-        this.flag = flag;
+
+	 public static final int AGE_MASK = 31;
+
+	 private static final long USED = 1L << 26;
+
+    private TranspositionEntry() {
     }
 
-}
+    /**
+     * Packs the fields of an entry
+     * @param score the evaluation score of the board position
+     * @param depth the depth at which the board position was evaluated
+     * @param bestMove the best move found at this position, see PackedMove
+     * @param flag whether the entry is an exact value, a lower bound, or an upper bound
+     * @param age the search the entry was stored in
+     * @return the packed entry, never 0
+     */
+    public static long pack(int score, int depth, int bestMove, int flag, int age) {
+        return (long) score << 32
+                | (long) (age & AGE_MASK) << 27
+                | USED
+                | (long) flag << 24
+                | (long) (depth & 0xFF) << 16
+                | (bestMove & 0xFFFF);
+    }
 
+    public static int score(long entry) {
+        return (int) (entry >> 32);
+    }
 
+    public static int depth(long entry) {
+        return (int) (entry >>> 16) & 0xFF;
+    }
+
+    public static int bestMove(long entry) {
+        return (int) entry & 0xFFFF;
+    }
+
+    public static int flag(long entry) {
+        return (int) (entry >>> 24) & 3;
+    }
+
+    public static int age(long entry) {
+        return (int) (entry >>> 27) & AGE_MASK;
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+   Fixed-size transposition table backed by primitive long arrays.
+   The table is split into buckets of two slots: the first keeps the deepest
+   entry of the current search, the second is always replaced. Every slot
+   stores the hash XORed with the packed entry, so an entry torn by two
+   threads writing at once fails verification instead of being trusted. This
+   lets several search threads share one table without locking.
+   The size in megabytes comes from -Dantichess.tt.mb.
+ */
+public class TranspositionTable
+{
+	public static final int DEFAULT_MB = 32;
+
+	// Two longs per slot
+	private static final int BYTES_PER_SLOT = 16;
+
+	private long[] keys;
+
+	private long[] entries;
+
+	// Number of buckets minus one, the bucket count is a power of two
+	private int bucketMask;
+
+	// Bumped for every search so entries from old searches get replaced first
+	private int age;
+
+	/**
+	   Constructs a table sized by the antichess.tt.mb system property
+	 */
+	public TranspositionTable()
+	{
+		this(Integer.getInteger("antichess.tt.mb", DEFAULT_MB));
+	}
+
+	/**
+	   Constructs a table using at most the given memory
+	   @param megabytes  the size of the table in megabytes
+	 */
+	public TranspositionTable(int megabytes)
+	{
+		long slots = Math.max(2L, (long) megabytes * 1024 * 1024 / BYTES_PER_SLOT);
+		// Round down to a power of two and cap at the largest array
+		int buckets = Integer.highestOneBit((int) Math.min(slots / 2, 1 << 29));
+		keys = new long[buckets * 2];
+		entries = new long[buckets * 2];
+		bucketMask = buckets - 1;
+	}
+
+	/**
+	   Marks the start of a new search, ageing the stored entries
+	 */
+	public void newSearch()
+	{
+		age = (age + 1) & TranspositionEntry.AGE_MASK;
+	}
+
+	/**
+	   Empties the table
+	 */
+	public void clear()
+	{
+		Arrays.fill(keys, 0L);
+		Arrays.fill(entries, 0L);
+	}
+
+	/**
+	   Looks up a position
+	   @param hash  the Zobrist hash of the position
+	   @return the packed entry (see TranspositionEntry), or 0 if not found
+	 */
+	public long probe(long hash)
+	{
+		int slot = ((int) hash & bucketMask) << 1;
+		for (int i = slot; i < slot + 2; i++)
+		{
+			long entry = entries[i];
+			if ((keys[i] ^ entry) == hash && entry != 0)
+				return entry;
+		}
+		return 0L;
+	}
+
+	/**
+	   Stores the result of searching a position
+	   @param hash      the Zobrist hash of the position
+	   @param score     the score found
+	   @param depth     the depth searched
+	   @param bestMove  the best move found, PackedMove.NONE if none
+	   @param flag      TranspositionEntry.EXACT, LOWERBOUND or UPPERBOUND
+	 */
+	public void store(long hash, int score, int depth, int bestMove, int flag)
+	{
+		int slot = ((int) hash & bucketMask) << 1;
+		long old = entries[slot];
+
+		// Depth-preferred slot unless it holds a deeper entry from this
+		// search, even one of the same position, whose bounds and move came
+		// from more work
+		if (!(old == 0 || TranspositionEntry.age(old) != age
+				|| depth >= TranspositionEntry.depth(old)))
+			slot++;
+
+		// Keep the previous best move when re-storing a position without one
+		if (bestMove == PackedMove.NONE && (keys[slot] ^ entries[slot]) == hash)
+			bestMove = TranspositionEntry.bestMove(entries[slot]);
+
+		long entry = TranspositionEntry.pack(score, depth, bestMove, flag, age);
+		entries[slot] = entry;
+		keys[slot] = hash ^ entry;
+	}
+
+	/**
+	   Estimates how full the table is from a sample of slots
+	   @return the used slots from the current search per thousand
+	 */
+	public int hashfull()
+	{
+		int used = 0;
+		int sample = Math.min(1000, entries.length);
+		for (int i = 0; i < sample; i++)
+		{
+			if (entries[i] != 0 && TranspositionEntry.age(entries[i]) == age)
+				used++;
+		}
+		return used * 1000 / sample;
+	}
+}
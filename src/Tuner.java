@@ -0,0 +1,445 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+   Tunes the evaluation weights from game records (Texel's method). Quiet
+   positions are taken from finished games, and the evaluation of each,
+   squashed into an expected score by a sigmoid, is compared with how the
+   game ended. The weights are changed one at a time, keeping any change
+   that lowers the mean squared error, until no change helps.
+
+   The games are read once and their positions written to a samples file of
+   fixed size records. Every error computation streams that file block by
+   block, so the number of positions is not limited by the heap, and each
+   block is evaluated on all cores with fork/join.
+
+   Games come from a game file that GameWriter keeps, or are text, one per
+   line, as Engine's main prints them: moves in coordinate notation, move
+   numbers optional, ending with the result 1-0, 0-1 or 1/2-1/2.
+   Usage: java Tuner games out [startParams] [passes]
+ */
+public class Tuner
+{
+	// Bytes per sample: a nibble per square, then the side to move and result
+	private static final int RECORD_BYTES = 33;
+
+	// Samples read from disk and evaluated at a time
+	private static final int BLOCK_SAMPLES = 1 << 15;
+
+	// Samples one fork/join task evaluates without splitting further
+	private static final int LEAF_SAMPLES = 1024;
+
+	// Opening plies left out, where the moves depend little on the weights
+	private static final int SKIP_PLIES = 8;
+
+	// Largest change tried for a weight, halved when no change helps
+	private static final int START_STEP = 8;
+
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private File samples;
+
+	private long sampleCount;
+
+	// Scales the evaluation in the sigmoid, fitted to the samples
+	private double k;
+
+	/**
+	   Constructs a tuner for the positions in a samples file
+	   @param samples  a file written by writeSamples
+	 */
+	public Tuner(File samples)
+	{
+		this.samples = samples;
+		sampleCount = samples.length() / RECORD_BYTES;
+		k = 1.0;
+	}
+
+	public long getSampleCount()
+	{
+		return sampleCount;
+	}
+
+	/**
+	   Replays game records and writes their quiet positions, those where the
+	   side to move does not have to take, with the game result
+	   @param games  a game file or a file of text games
+	   @param out    the samples file to write
+	   @return the number of positions written
+	   @throws IOException if a file cannot be read or written, or a game
+	           has a move that is not legal
+	 */
+	public static long writeSamples(File games, File out) throws IOException
+	{
+		try (OutputStream samplesOut = new BufferedOutputStream(
+				new FileOutputStream(out)))
+		{
+			if (GameReader.isGameFile(games))
+				return writeGameSamples(games, samplesOut);
+			return writeTextSamples(games, samplesOut);
+		}
+	}
+
+	private static long writeGameSamples(File games, OutputStream samplesOut)
+			throws IOException
+	{
+		long count = 0;
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		byte[] record = new byte[RECORD_BYTES];
+		GameRecord game = new GameRecord();
+		try (GameReader in = new GameReader(games))
+		{
+			while (in.next(game))
+			{
+				int result = game.getWhiteScore();
+				if (result < 0) // Unfinished, nothing to learn from
+					continue;
+
+				Position pos = game.getStartPosition();
+				for (int ply = 0; ply < game.getMoveCount(); ply++)
+				{
+					int legal = MoveGenerator.generateLegal(pos, moves);
+					int move = game.getMove(ply);
+					if (findMove(PackedMove.toString(move), moves, legal) != move)
+						throw new IOException(games + ": game " + in.getGames()
+								+ ": illegal move " + PackedMove.toString(move));
+					count += writeSample(pos, ply, moves, result, record,
+							samplesOut);
+					pos.makeMove(move);
+				}
+			}
+		}
+		return count;
+	}
+
+	private static long writeTextSamples(File games, OutputStream samplesOut)
+			throws IOException
+	{
+		long count = 0;
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		byte[] record = new byte[RECORD_BYTES];
+		try (BufferedReader in = new BufferedReader(new FileReader(games)))
+		{
+			String line;
+			int lineNumber = 0;
+			while ((line = in.readLine()) != null)
+			{
+				lineNumber++;
+				String[] tokens = line.trim().split("\\s+");
+				int result = result(tokens[tokens.length - 1]);
+				if (result < 0) // Unfinished, nothing to learn from
+					continue;
+
+				Position pos = Position.startPosition();
+				int ply = 0;
+				for (int i = 0; i < tokens.length - 1; i++)
+				{
+					if (tokens[i].endsWith("."))
+						continue;
+					int legal = MoveGenerator.generateLegal(pos, moves);
+					int move = findMove(tokens[i], moves, legal);
+					if (move == PackedMove.NONE)
+						throw new IOException(games + ":" + lineNumber
+								+ ": illegal move " + tokens[i]);
+					count += writeSample(pos, ply, moves, result, record,
+							samplesOut);
+					pos.makeMove(move);
+					ply++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	   Writes a position as a sample if it is past the opening and quiet
+	   @param pos     the position
+	   @param ply     the plies played in the game before it
+	   @param moves   its legal moves
+	   @param result  the result of the game from white's side
+	   @param record  a buffer for the sample
+	   @param out     the samples file
+	   @return 1 if the sample was written, otherwise 0
+	   @throws IOException if the samples cannot be written
+	 */
+	private static int writeSample(Position pos, int ply, int[] moves,
+			int result, byte[] record, OutputStream out) throws IOException
+	{
+		if (ply < SKIP_PLIES || PackedMove.isCapture(moves[0]))
+			return 0;
+		encode(pos, result, record);
+		out.write(record);
+		return 1;
+	}
+
+	// Result from white's side: 2 for a win, 1 for a draw, 0 for a loss
+	private static int result(String token)
+	{
+		if (token.equals("1-0"))
+			return 2;
+		if (token.equals("0-1"))
+			return 0;
+		if (token.equals("1/2-1/2"))
+			return 1;
+		return -1;
+	}
+
+	private static int findMove(String text, int[] moves, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			if (PackedMove.toString(moves[i]).equals(text))
+				return moves[i];
+		}
+		return PackedMove.NONE;
+	}
+
+	private static void encode(Position pos, int result, byte[] record)
+	{
+		for (int sq = 0; sq < 64; sq += 2)
+			record[sq >> 1] = (byte) (pos.getPiece(sq) + 1
+					| pos.getPiece(sq + 1) + 1 << 4);
+		record[32] = (byte) (pos.getSideToMove() | result << 2);
+	}
+
+	/**
+	   Sets up a position from a sample
+	   @param block   the samples
+	   @param index   the index of the sample in the block
+	   @param pos     the position to set up
+	   @param params  the weights the position keeps its sums for
+	   @return the result from white's side, 2 for a win, 1 for a draw
+	 */
+	private static int decode(byte[] block, int index, Position pos,
+			EvalParams params)
+	{
+		int offset = index * RECORD_BYTES;
+		pos.clear();
+		pos.setEvalParams(params);
+		for (int sq = 0; sq < 64; sq++)
+		{
+			int code = (block[offset + (sq >> 1)] >> ((sq & 1) << 2) & 15) - 1;
+			if (code != Position.NO_PIECE)
+				pos.addPiece(sq, Position.typeOf(code), Position.colourOf(code),
+						true);
+		}
+		pos.setSideToMove(block[offset + 32] & 3);
+		return block[offset + 32] >> 2 & 3;
+	}
+
+	/**
+	   Computes the mean squared error of the expected scores of the samples
+	   against their results
+	   @param params  the weights to evaluate with
+	   @return the mean squared error
+	   @throws IOException if the samples cannot be read
+	 */
+	public double error(EvalParams params) throws IOException
+	{
+		double sum = 0.0;
+		byte[] block = new byte[BLOCK_SAMPLES * RECORD_BYTES];
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(samples))))
+		{
+			for (long done = 0; done < sampleCount; done += BLOCK_SAMPLES)
+			{
+				int count = (int) Math.min(BLOCK_SAMPLES, sampleCount - done);
+				in.readFully(block, 0, count * RECORD_BYTES);
+				sum += pool.invoke(new ErrorTask(block, 0, count, params, k));
+			}
+		}
+		return sum / Math.max(1, sampleCount);
+	}
+
+	/**
+	   Sums the squared errors of a range of samples, splitting large ranges
+	   between threads
+	 */
+	private static class ErrorTask extends RecursiveTask<Double>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private byte[] block;
+		private int start;
+		private int end;
+		private EvalParams params;
+		private double k;
+
+		ErrorTask(byte[] block, int start, int end, EvalParams params,
+				double k)
+		{
+			this.block = block;
+			this.start = start;
+			this.end = end;
+			this.params = params;
+			this.k = k;
+		}
+
+		protected Double compute()
+		{
+			if (end - start > LEAF_SAMPLES)
+			{
+				int middle = (start + end) >>> 1;
+				ErrorTask left = new ErrorTask(block, start, middle, params, k);
+				left.fork();
+				double right = new ErrorTask(block, middle, end, params, k)
+						.compute();
+				return right + left.join();
+			}
+
+			Position pos = new Position();
+			double sum = 0.0;
+			for (int i = start; i < end; i++)
+			{
+				double result = decode(block, i, pos, params) / 2.0;
+				int score = Evaluation.evaluate(pos);
+				if (pos.getSideToMove() == Position.BLACK)
+					score = -score;
+				double error = result - sigmoid(score, k);
+				sum += error * error;
+			}
+			return sum;
+		}
+	}
+
+	/**
+	   Turns an evaluation into an expected score between 0 and 1
+	   @param score  the evaluation
+	   @param k      the scaling of the evaluation
+	   @return the expected score
+	 */
+	static double sigmoid(int score, double k)
+	{
+		return 1.0 / (1.0 + Math.pow(10.0, -k * score / 400.0));
+	}
+
+	/**
+	   Fits the scaling of the sigmoid to the samples, so that the weights
+	   start out matching the results as well as they can
+	   @param params  the weights to fit for
+	   @return the error with the fitted scaling
+	   @throws IOException if the samples cannot be read
+	 */
+	public double fitScaling(EvalParams params) throws IOException
+	{
+		double best = error(params);
+		for (double step = 0.5; step >= 0.01; step /= 2)
+		{
+			boolean improved = true;
+			while (improved)
+			{
+				improved = false;
+				for (double change : new double[] { step, -step })
+				{
+					double oldK = k;
+					k = Math.max(0.01, k + change);
+					double e = error(params);
+					if (e < best)
+					{
+						best = e;
+						improved = true;
+						break;
+					}
+					k = oldK;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	   Changes one weight at a time by a step in each direction and keeps
+	   the change when the error falls. The step is halved whenever a pass
+	   over every weight changes nothing.
+	   @param start   the weights to start from
+	   @param passes  the most passes over the weights
+	   @param out     the file to save the weights to after every pass
+	   @return the tuned weights
+	   @throws IOException if the samples cannot be read or the weights saved
+	 */
+	public EvalParams tune(EvalParams start, int passes, File out)
+			throws IOException
+	{
+		int[] values = start.getValues();
+		EvalParams params = start;
+		double best = error(params);
+		int step = START_STEP;
+		for (int pass = 1; pass <= passes && step > 0; pass++)
+		{
+			int changed = 0;
+			for (int i = 0; i < values.length; i++)
+			{
+				if (!isUsed(i / 2))
+					continue;
+				for (int change : new int[] { step, -step })
+				{
+					values[i] += change;
+					EvalParams trial = new EvalParams(values);
+					double e = error(trial);
+					if (e < best)
+					{
+						best = e;
+						params = trial;
+						changed++;
+						break;
+					}
+					values[i] -= change;
+				}
+			}
+			params.save(out);
+			System.out.println(String.format("pass %d step %d changed %d error %.6f",
+					pass, step, changed, best));
+			if (changed == 0)
+				step /= 2;
+		}
+		return params;
+	}
+
+	// Pawns never stand on the first or last row, so those weights do nothing
+	private static boolean isUsed(int index)
+	{
+		int pawnSquare = index - EvalParams.PIECE_SQUARE;
+		if (pawnSquare < 0 || pawnSquare >= 64)
+			return true;
+		int row = pawnSquare >> 3;
+		return row != 0 && row != 7;
+	}
+
+	/**
+	   Tunes the weights from a file of games and saves them
+	   @param args  the games, the parameter file to write, optionally the
+	                weights to start from and the most passes
+	   @throws IOException if a file cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: java Tuner games out [startParams] [passes]");
+			return;
+		}
+		EvalParams start = args.length > 2 ? EvalParams.load(new File(args[2]))
+				: EvalParams.defaults();
+		int passes = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+		File samples = File.createTempFile("antichess", ".samples");
+		samples.deleteOnExit();
+		long count = writeSamples(new File(args[0]), samples);
+		Tuner tuner = new Tuner(samples);
+		System.out.println(count + " positions on " + pool.getParallelism()
+				+ " threads");
+		double error = tuner.fitScaling(start);
+		System.out.println(String.format("k %.3f error %.6f", tuner.k, error));
+		tuner.tune(start, passes, new File(args[1]));
+	}
+}
@@ -0,0 +1,58 @@
+import java.util.Random;
+
+/**
+   Random keys for Zobrist hashing of a Position. The keys come from a fixed
+   seed so a position hashes to the same value in every run, which lets
+   hashes be stored in files.
+ */
+public final class Zobrist
+{
+	// One key per piece code and square
+	static final long[][] PIECE_SQUARE = new long[12][64];
+
+	// One key per square holding a pawn that may still step two squares
+	static final long[] UNMOVED_PAWN = new long[64];
+
+	// Included when black is to move
+	static final long BLACK_TO_MOVE;
+
+	static
+	{
+		Random rand = new Random(0x5EED_A171C4E55L);
+		for (int code = 0; code < 12; code++)
+		{
+			for (int sq = 0; sq < 64; sq++)
+				PIECE_SQUARE[code][sq] = rand.nextLong();
+		}
+		for (int sq = 0; sq < 64; sq++)
+			UNMOVED_PAWN[sq] = rand.nextLong();
+		BLACK_TO_MOVE = rand.nextLong();
+	}
+
+	private Zobrist()
+	{
+	}
+
+	/**
+	   Hashes a position from scratch. Position keeps its hash up to date
+	   incrementally, so this is only needed for checking.
+	   @param pos  the position to hash
+	   @return the Zobrist hash of the position
+	 */
+	public static long compute(Position pos)
+	{
+		long hash = 0L;
+		long occupied = pos.getOccupied();
+		while (occupied != 0)
+		{
+			int sq = Long.numberOfTrailingZeros(occupied);
+			occupied &= occupied - 1;
+			hash ^= PIECE_SQUARE[pos.getPiece(sq)][sq];
+			if (!pos.hasMoved(sq))
+				hash ^= UNMOVED_PAWN[sq];
+		}
+		if (pos.getSideToMove() == Position.BLACK)
+			hash ^= BLACK_TO_MOVE;
+		return hash;
+	}
+}